@@ -0,0 +1,95 @@
+package com.mayosen.academy;
+
+import com.mayosen.academy.requests.ItemImportRequest;
+import com.mayosen.academy.responses.items.ItemResponse;
+import com.mayosen.academy.responses.updates.ItemHistoryResponse;
+import com.mayosen.academy.services.ItemService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Импорт, получение поддерева и страницы истории через сервис с настоящей базой.
+ * Перед прогоном все элементы в базе удаляются, поэтому подключение задается отдельными переменными
+ * окружения BENCH_DB_URL, BENCH_DB_USERNAME, BENCH_DB_PASSWORD, а не переменными приложения.
+ * Без BENCH_DB_URL бенчмарк не запускается.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ImportBenchmark {
+    @Param({"1000", "10000"})
+    private int batchSize;
+
+    /**
+     * Глубина дерева определяется размером запроса и количеством детей у папки.
+     */
+    @Param({"2", "16", "256"})
+    private int fanOut;
+
+    private ConfigurableApplicationContext context;
+    private ItemService itemService;
+    private Instant updateDate;
+    private long seed;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String url = System.getenv("BENCH_DB_URL");
+
+        if (url == null || url.isBlank()) {
+            throw new IllegalStateException("BENCH_DB_URL is not set, ImportBenchmark needs a dedicated database");
+        }
+
+        // Аргументы командной строки важнее application.yml, поэтому DB_URL приложения не используется
+        context = new SpringApplicationBuilder(AcademyProjectApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(
+                        "--spring.datasource.url=jdbc:" + url,
+                        "--spring.datasource.username=" + getenv("BENCH_DB_USERNAME"),
+                        "--spring.datasource.password=" + getenv("BENCH_DB_PASSWORD"),
+                        "--academy.imports.max-depth=" + batchSize
+                );
+        context.getBean(JdbcTemplate.class).execute("TRUNCATE TABLE system_item CASCADE");
+        itemService = context.getBean(ItemService.class);
+        updateDate = Instant.parse("2022-10-10T12:00:00Z");
+        itemService.updateItems(nextRequest());
+    }
+
+    private static String getenv(String name) {
+        String value = System.getenv(name);
+        return value != null ? value : "";
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * Каждый запрос меняет размеры всех файлов, поэтому пересчитываются все папки дерева.
+     */
+    private ItemImportRequest nextRequest() {
+        updateDate = updateDate.plusSeconds(1);
+        return new ItemImportRequest(Trees.imports(batchSize, fanOut, seed++), updateDate);
+    }
+
+    @Benchmark
+    public void reimport() {
+        itemService.updateItems(nextRequest());
+    }
+
+    @Benchmark
+    public ItemResponse getNode() {
+        return itemService.getNode(Trees.id(0));
+    }
+
+    @Benchmark
+    public ItemHistoryResponse historyPage() {
+        return itemService.getNodeHistory(Trees.id(0), null, null, null, null);
+    }
+}
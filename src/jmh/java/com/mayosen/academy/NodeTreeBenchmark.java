@@ -0,0 +1,57 @@
+package com.mayosen.academy;
+
+import com.mayosen.academy.domain.Item;
+import com.mayosen.academy.repos.ItemRepo;
+import com.mayosen.academy.responses.items.ItemResponse;
+import com.mayosen.academy.services.ItemMetrics;
+import com.mayosen.academy.services.ItemService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сборка ответа GET /nodes/{id} из уже загруженного поддерева.
+ * Репозиторий подменяется заглушкой, поэтому база не нужна.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NodeTreeBenchmark {
+    @Param({"1000", "100000"})
+    private int nodes;
+
+    /**
+     * 1 - цепочка, большие значения - широкое неглубокое дерево.
+     */
+    @Param({"1", "10", "1000"})
+    private int fanOut;
+
+    private ItemService itemService;
+
+    @Setup
+    public void setUp() {
+        List<Item> subtree = Trees.items(nodes, fanOut);
+        ItemRepo itemRepo = (ItemRepo) Proxy.newProxyInstance(
+                ItemRepo.class.getClassLoader(),
+                new Class<?>[]{ItemRepo.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("findSubtree")) {
+                        return subtree;
+                    }
+
+                    throw new UnsupportedOperationException(method.getName());
+                }
+        );
+        itemService = new ItemService(
+                itemRepo, null, null, null, null, new ItemMetrics(new SimpleMeterRegistry()), 1000, Integer.MAX_VALUE
+        );
+    }
+
+    @Benchmark
+    public ItemResponse getNode() {
+        return itemService.getNode(Trees.id(0));
+    }
+}
@@ -0,0 +1,104 @@
+package com.mayosen.academy;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mayosen.academy.domain.Item;
+import com.mayosen.academy.responses.items.ItemResponse;
+import com.mayosen.academy.responses.updates.ItemHistoryResponse;
+import com.mayosen.academy.responses.updates.ItemHistoryUnit;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сериализация ответов GET /nodes/{id} и истории тем же построителем ObjectMapper, что и в приложении.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SerializationBenchmark {
+    /**
+     * Глубина цепочки для {@link #deepNode}. Сериализация рекурсивна, поэтому глубина меньше, чем в других бенчмарках.
+     */
+    private static final int DEEP_NODES = 500;
+
+    @Param({"1000", "100000"})
+    private int nodes;
+
+    @Param({"10", "1000"})
+    private int fanOut;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    /**
+     * Поток без записи. ObjectMapper закрывает поток после записи, поэтому закрытие ничего не меняет.
+     */
+    private final OutputStream out = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    private ItemResponse node;
+    private ItemResponse deepNode;
+    private ItemHistoryResponse history;
+
+    @Setup
+    public void setUp() {
+        node = toResponse(Trees.items(nodes, fanOut));
+        deepNode = toResponse(Trees.items(DEEP_NODES, 1));
+
+        List<ItemHistoryUnit> units = new ArrayList<>(nodes);
+
+        for (Item item : Trees.items(nodes, fanOut)) {
+            units.add(new ItemHistoryUnit(item));
+        }
+
+        history = new ItemHistoryResponse(units);
+    }
+
+    private static ItemResponse toResponse(List<Item> items) {
+        Map<String, ItemResponse> responses = new HashMap<>(items.size() * 2);
+
+        for (Item item : items) {
+            ItemResponse response = new ItemResponse(item);
+            responses.put(item.getId(), response);
+
+            if (item.getParent() != null) {
+                ItemResponse parent = responses.get(item.getParent().getId());
+
+                if (parent.getChildren() == null) {
+                    parent.setChildren(new ArrayList<>());
+                }
+
+                parent.getChildren().add(response);
+            }
+        }
+
+        return responses.get(items.get(0).getId());
+    }
+
+    @Benchmark
+    public void node() throws IOException {
+        objectMapper.writeValue(out, node);
+    }
+
+    @Benchmark
+    public void deepNode() throws IOException {
+        objectMapper.writeValue(out, deepNode);
+    }
+
+    @Benchmark
+    public void history() throws IOException {
+        objectMapper.writeValue(out, history);
+    }
+}
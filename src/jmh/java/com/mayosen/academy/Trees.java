@@ -0,0 +1,87 @@
+package com.mayosen.academy;
+
+import com.mayosen.academy.domain.Item;
+import com.mayosen.academy.domain.ItemType;
+import com.mayosen.academy.requests.ItemImport;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Генерация деревьев для бенчмарков.
+ * Узлы нумеруются в ширину: родитель узла i - узел (i - 1) / fanOut, поэтому родитель всегда идет раньше детей.
+ * Узлы с детьми - папки, остальные - файлы. При fanOut = 1 получается цепочка.
+ */
+public final class Trees {
+    private Trees() {
+    }
+
+    public static String id(int node) {
+        return "n" + node;
+    }
+
+    public static int parent(int node, int fanOut) {
+        return node > 0 ? (node - 1) / fanOut : -1;
+    }
+
+    public static boolean isFolder(int node, int nodes, int fanOut) {
+        return (long) node * fanOut + 1 < nodes;
+    }
+
+    /**
+     * Элементы запроса на импорт дерева.
+     * @param seed добавка к размерам файлов, чтобы повторный импорт менял размеры
+     */
+    public static List<ItemImport> imports(int nodes, int fanOut, long seed) {
+        List<ItemImport> items = new ArrayList<>(nodes);
+
+        for (int node = 0; node < nodes; node++) {
+            String parentId = node > 0 ? id(parent(node, fanOut)) : null;
+
+            if (isFolder(node, nodes, fanOut)) {
+                items.add(new ItemImport(id(node), null, parentId, ItemType.FOLDER, null));
+            } else {
+                items.add(new ItemImport(id(node), "url", parentId, ItemType.FILE, 1 + (node + seed) % 100));
+            }
+        }
+
+        return items;
+    }
+
+    /**
+     * Сущности дерева со связями с родителями и посчитанными размерами папок, родители раньше детей.
+     */
+    public static List<Item> items(int nodes, int fanOut) {
+        List<Item> items = new ArrayList<>(nodes);
+        Instant date = Instant.parse("2022-10-10T12:00:00Z");
+
+        for (int node = 0; node < nodes; node++) {
+            Item item = new Item();
+            item.setId(id(node));
+            item.setDate(date);
+
+            if (node > 0) {
+                item.setParent(items.get(parent(node, fanOut)));
+            }
+
+            if (isFolder(node, nodes, fanOut)) {
+                item.setType(ItemType.FOLDER);
+                item.setSize(0L);
+            } else {
+                item.setType(ItemType.FILE);
+                item.setUrl("url");
+                item.setSize(1L + node % 100);
+            }
+
+            items.add(item);
+        }
+
+        for (int node = nodes - 1; node > 0; node--) {
+            Item parent = items.get(parent(node, fanOut));
+            parent.setSize(parent.getSize() + items.get(node).getSize());
+        }
+
+        return items;
+    }
+}
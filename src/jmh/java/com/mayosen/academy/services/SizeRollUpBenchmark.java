@@ -0,0 +1,50 @@
+package com.mayosen.academy.services;
+
+import com.mayosen.academy.Trees;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пересчет размеров папок одного импорта без базы.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SizeRollUpBenchmark {
+    @Param({"10000", "1000000"})
+    private int nodes;
+
+    /**
+     * 1 - цепочка глубиной в количество узлов.
+     */
+    @Param({"1", "10", "1000"})
+    private int fanOut;
+
+    private int[] parents;
+
+    @Setup
+    public void setUp() {
+        parents = new int[nodes];
+
+        for (int node = 0; node < nodes; node++) {
+            parents[node] = Trees.parent(node, fanOut);
+        }
+    }
+
+    @Benchmark
+    public long rollUp() {
+        SizeRollUp rollUp = new SizeRollUp(nodes, Integer.MAX_VALUE);
+
+        for (int node = 0; node < nodes; node++) {
+            rollUp.addSize(node, 1 + node % 100);
+
+            if (parents[node] != SizeRollUp.NO_PARENT) {
+                rollUp.setParent(node, parents[node]);
+            }
+        }
+
+        int[] order = rollUp.rollUp();
+        return rollUp.getSize(order[0]);
+    }
+}
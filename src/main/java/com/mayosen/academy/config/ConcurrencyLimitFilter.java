@@ -0,0 +1,68 @@
+package com.mayosen.academy.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mayosen.academy.responses.ErrorResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ограничение числа одновременно обрабатываемых HTTP-запросов.
+ * Исполнитель виртуальных потоков принимает любое число запросов, и без ограничения при всплеске
+ * тысячи потоков ждали бы соединения Hikari до таймаута и завершались ошибкой 500.
+ * Запрос, не получивший разрешения за {@code queueTimeout}, сразу получает 503.
+ * @see VirtualThreadsConfig
+ */
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+    private final Semaphore permits;
+    private final long queueTimeoutNanos;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * @param maxConcurrentRequests наибольшее число одновременно обрабатываемых запросов
+     * @param queueTimeout сколько запрос может ждать разрешения
+     */
+    public ConcurrencyLimitFilter(int maxConcurrentRequests, Duration queueTimeout, ObjectMapper objectMapper) {
+        this.permits = new Semaphore(maxConcurrentRequests, true);
+        this.queueTimeoutNanos = queueTimeout.toNanos();
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected void doFilterInternal(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            FilterChain filterChain
+    ) throws ServletException, IOException {
+        boolean acquired;
+
+        try {
+            acquired = permits.tryAcquire(queueTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+
+        if (!acquired) {
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            objectMapper.writeValue(response.getOutputStream(), new ErrorResponse(503, "Too many requests"));
+            return;
+        }
+
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            permits.release();
+        }
+    }
+}
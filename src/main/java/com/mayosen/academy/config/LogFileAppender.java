@@ -0,0 +1,40 @@
+package com.mayosen.academy.config;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.rolling.RollingFileAppender;
+import ch.qos.logback.core.util.OptionHelper;
+
+/**
+ * Файловый журнал, который включается только при заданных logging.file.name или logging.file.path.
+ * Spring Boot передает их в logback как LOG_FILE и LOG_PATH. Без них, как и в конфигурации Boot по умолчанию,
+ * журнал пишется только в консоль, и запуск тестов не создает файл во временном каталоге.
+ * Подключается в logback-spring.xml.
+ */
+public class LogFileAppender extends RollingFileAppender<ILoggingEvent> {
+    @Override
+    public void start() {
+        if (isDefined("LOG_FILE") || isDefined("LOG_PATH")) {
+            super.start();
+        } else {
+            addInfo("Neither LOG_FILE nor LOG_PATH is set, file logging is disabled");
+        }
+    }
+
+    /**
+     * Журнал без файла молча пропускает записи, а не предупреждает о неначатом приемнике.
+     */
+    @Override
+    public void doAppend(ILoggingEvent event) {
+        if (isStarted()) {
+            super.doAppend(event);
+        }
+    }
+
+    /**
+     * Свойства контекста не проверяются: logback-spring.xml всегда задает LOG_FILE для журнала в формате JSON.
+     */
+    private static boolean isDefined(String name) {
+        return !OptionHelper.isEmpty(OptionHelper.getSystemProperty(name))
+                || !OptionHelper.isEmpty(OptionHelper.getEnv(name));
+    }
+}
@@ -0,0 +1,77 @@
+package com.mayosen.academy.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Учет SQL-запросов по HTTP-запросам через прокси источника данных.
+ * Позволяет заметить, что изменение кода превратило один запрос к базе в запрос на каждый элемент.
+ */
+@Configuration(proxyBeanMethods = false)
+public class MetricsConfig implements WebMvcConfigurer {
+    private final StatementCounter statementCounter;
+    private final MeterRegistry registry;
+    private final int defaultBudget;
+    private final Map<String, Integer> budgets;
+
+    @Autowired
+    public MetricsConfig(
+            StatementCounter statementCounter,
+            MeterRegistry registry,
+            Environment environment,
+            @Value("${academy.sql.statement-budget:50}") int defaultBudget
+    ) {
+        this.statementCounter = statementCounter;
+        this.registry = registry;
+        this.defaultBudget = defaultBudget;
+        this.budgets = Binder.get(environment)
+                .bind("academy.sql.endpoint-budgets", Bindable.mapOf(String.class, Integer.class))
+                .orElse(Map.of());
+    }
+
+    @Bean
+    public static StatementCounter statementCounter() {
+        return new StatementCounter();
+    }
+
+    /**
+     * Оборачивание источника данных до того, как его получат Hibernate, JdbcTemplate и Flyway.
+     * Метод статический, чтобы обработчик создавался раньше остальных компонентов конфигурации.
+     */
+    @Bean
+    public static BeanPostProcessor statementCountingDataSource(StatementCounter statementCounter) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof ProxyDataSource)) {
+                    return ProxyDataSourceBuilder.create(beanName, dataSource)
+                            .listener(statementCounter)
+                            .build();
+                }
+
+                return bean;
+            }
+        };
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry interceptors) {
+        interceptors.addInterceptor(
+                new StatementBudgetInterceptor(statementCounter, registry, defaultBudget, budgets)
+        );
+    }
+}
@@ -0,0 +1,59 @@
+package com.mayosen.academy.config;
+
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Контекст журнала HTTP-запроса.
+ * Каждой записи добавляется идентификатор запроса, а случайная доля запросов
+ * получает подробный журнал DEBUG через {@link SampledDebugTurboFilter}.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class RequestLoggingFilter extends OncePerRequestFilter {
+    public static final String REQUEST_ID = "requestId";
+    public static final String DEBUG_SAMPLED = "debugSampled";
+
+    private final double debugSampleRate;
+
+    /**
+     * @param debugSampleRate доля запросов с подробным журналом, от 0 до 1
+     */
+    @Autowired
+    public RequestLoggingFilter(@Value("${academy.logging.debug-sample-rate:0}") double debugSampleRate) {
+        this.debugSampleRate = debugSampleRate;
+    }
+
+    @Override
+    protected void doFilterInternal(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            FilterChain filterChain
+    ) throws ServletException, IOException {
+        MDC.put(REQUEST_ID, UUID.randomUUID().toString());
+
+        if (debugSampleRate > 0 && ThreadLocalRandom.current().nextDouble() < debugSampleRate) {
+            MDC.put(DEBUG_SAMPLED, "true");
+        }
+
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            MDC.remove(REQUEST_ID);
+            MDC.remove(DEBUG_SAMPLED);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.mayosen.academy.config;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.MDC;
+import org.slf4j.Marker;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Пропуск записей DEBUG выбранных журналов в запросах, отмеченных {@link RequestLoggingFilter}.
+ * Фильтр срабатывает до проверки уровня журнала, поэтому уровень остается рабочим,
+ * а подробный журнал пишется только для доли запросов. Для остальных записей решение не меняется.
+ * Подключается в logback-spring.xml, префиксы журналов задаются там же.
+ */
+public class SampledDebugTurboFilter extends TurboFilter {
+    private final List<String> loggerPrefixes = new ArrayList<>();
+
+    public void addLoggerPrefix(String prefix) {
+        loggerPrefixes.add(prefix);
+    }
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        if (level != Level.DEBUG || MDC.get(RequestLoggingFilter.DEBUG_SAMPLED) == null) {
+            return FilterReply.NEUTRAL;
+        }
+
+        for (String prefix : loggerPrefixes) {
+            if (logger.getName().startsWith(prefix)) {
+                return FilterReply.ACCEPT;
+            }
+        }
+
+        return FilterReply.NEUTRAL;
+    }
+}
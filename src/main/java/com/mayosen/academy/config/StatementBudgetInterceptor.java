@@ -0,0 +1,97 @@
+package com.mayosen.academy.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Количество и суммарное время SQL-запросов на каждый HTTP-запрос.
+ * Метрики помечены методом и шаблоном пути, как и http.server.requests.
+ * Если запрос выполнил больше SQL-запросов, чем позволяет бюджет эндпоинта,
+ * в журнал пишется предупреждение с самым частым запросом.
+ */
+@Slf4j
+class StatementBudgetInterceptor implements HandlerInterceptor {
+    /**
+     * Длина текста запроса в предупреждении.
+     */
+    private static final int MAX_QUERY_LENGTH = 200;
+
+    private final StatementCounter statementCounter;
+    private final MeterRegistry registry;
+    private final int defaultBudget;
+    private final Map<String, Integer> budgets;
+
+    /**
+     * @param defaultBudget бюджет эндпоинтов без собственного значения, 0 - без ограничения
+     * @param budgets бюджеты по шаблону пути. Каждый шаблон API обслуживает один метод
+     */
+    StatementBudgetInterceptor(
+            StatementCounter statementCounter,
+            MeterRegistry registry,
+            int defaultBudget,
+            Map<String, Integer> budgets
+    ) {
+        this.statementCounter = statementCounter;
+        this.registry = registry;
+        this.defaultBudget = defaultBudget;
+        this.budgets = budgets;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        statementCounter.reset();
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            Object handler,
+            Exception ex
+    ) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String method = request.getMethod();
+        String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+        long count = statementCounter.getCount();
+        Duration time = statementCounter.getTime();
+
+        DistributionSummary.builder("academy.http.statements")
+                .description("Количество SQL-запросов на HTTP-запрос")
+                .tags("method", method, "uri", uri)
+                .register(registry)
+                .record(count);
+        Timer.builder("academy.http.statements.time")
+                .description("Суммарное время SQL-запросов на HTTP-запрос")
+                .tags("method", method, "uri", uri)
+                .register(registry)
+                .record(time);
+
+        int budget = budgets.getOrDefault(uri, defaultBudget);
+
+        if (budget > 0 && count > budget) {
+            Map.Entry<String, Integer> frequent = statementCounter.getMostFrequent();
+            String query = frequent.getKey();
+
+            if (query.length() > MAX_QUERY_LENGTH) {
+                query = query.substring(0, MAX_QUERY_LENGTH) + "...";
+            }
+
+            log.warn(
+                    "SQL statement budget exceeded: method={} uri={} status={} statements={} budget={} "
+                            + "timeMs={} topCount={} topQuery=\"{}\"",
+                    method, uri, response.getStatus(), count, budget,
+                    time.toMillis(), frequent.getValue(), query
+            );
+        }
+    }
+}
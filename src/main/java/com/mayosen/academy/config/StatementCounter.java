@@ -0,0 +1,64 @@
+package com.mayosen.academy.config;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Учет SQL-запросов в текущем потоке.
+ * Прокси источника данных сообщает о каждом выполненном запросе, поэтому учитываются запросы
+ * и Hibernate, и JdbcTemplate. Пакет однотипных запросов считается одним обращением к базе.
+ * Счетчик сбрасывается в начале HTTP-запроса и хранит значения до начала следующего запроса в том же потоке,
+ * поэтому тесты MockMvc могут проверить количество запросов сразу после выполнения.
+ */
+public class StatementCounter implements QueryExecutionListener {
+    private static final ThreadLocal<Stats> STATS = ThreadLocal.withInitial(Stats::new);
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        STATS.get().startedAt = System.nanoTime();
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        Stats stats = STATS.get();
+        stats.count++;
+        stats.nanos += System.nanoTime() - stats.startedAt;
+
+        for (QueryInfo query : queryInfoList) {
+            stats.queries.merge(query.getQuery(), 1, Integer::sum);
+        }
+    }
+
+    public void reset() {
+        STATS.set(new Stats());
+    }
+
+    public long getCount() {
+        return STATS.get().count;
+    }
+
+    public Duration getTime() {
+        return Duration.ofNanos(STATS.get().nanos);
+    }
+
+    /**
+     * Самый частый запрос с момента сброса, обычно он и указывает на N+1.
+     * @return текст запроса и количество выполнений или null, если запросов не было
+     */
+    public Map.Entry<String, Integer> getMostFrequent() {
+        return STATS.get().queries.entrySet().stream().max(Map.Entry.comparingByValue()).orElse(null);
+    }
+
+    private static class Stats {
+        long count;
+        long nanos;
+        long startedAt;
+        final Map<String, Integer> queries = new HashMap<>();
+    }
+}
@@ -0,0 +1,77 @@
+package com.mayosen.academy.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Обработка HTTP-запросов на виртуальных потоках вместо пула потоков Tomcat.
+ * Запросы блокируются на JDBC, и с обычным пулом число одновременных запросов ограничено числом потоков.
+ * Виртуальный поток при блокировке освобождает поток-носитель, поэтому ожидание базы не занимает поток ОС.
+ * Одновременные обращения к базе ограничивает пул Hikari, а число одновременных запросов -
+ * {@link ConcurrencyLimitFilter}, по умолчанию по размеру пула: лишние запросы быстро получают 503,
+ * а не ждут соединения до таймаута. Драйвер PostgreSQL начиная с 42.6 не держит монитор во время ввода-вывода.
+ * Виртуальные потоки появились в Java 21, а проект собирается под Java 17,
+ * поэтому исполнитель создается через отражение и требует соответствующей среды выполнения.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "academy.server.virtual-threads", havingValue = "true")
+public class VirtualThreadsConfig {
+    private static final int MIN_JAVA_VERSION = 21;
+
+    /**
+     * Исполнитель закрывается при остановке контекста.
+     */
+    @Bean(destroyMethod = "close")
+    public ExecutorService virtualThreadExecutor() {
+        return newVirtualThreadPerTaskExecutor();
+    }
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadsCustomizer(ExecutorService virtualThreadExecutor) {
+        return protocolHandler -> protocolHandler.setExecutor(virtualThreadExecutor);
+    }
+
+    /**
+     * Фильтр выполняется сразу после {@link RequestLoggingFilter}, чтобы отказ тоже попал в журнал с идентификатором.
+     */
+    @Bean
+    public FilterRegistrationBean<ConcurrencyLimitFilter> concurrencyLimitFilter(
+            ObjectMapper objectMapper,
+            @Value("${academy.server.max-concurrent-requests:${spring.datasource.hikari.maximum-pool-size:10}}")
+            int maxConcurrentRequests,
+            @Value("${academy.server.queue-timeout:1s}") Duration queueTimeout
+    ) {
+        FilterRegistrationBean<ConcurrencyLimitFilter> registration = new FilterRegistrationBean<>(
+                new ConcurrencyLimitFilter(maxConcurrentRequests, queueTimeout, objectMapper)
+        );
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 1);
+        return registration;
+    }
+
+    /**
+     * @throws IllegalStateException среда выполнения не поддерживает виртуальные потоки
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        if (Runtime.version().feature() < MIN_JAVA_VERSION) {
+            throw new IllegalStateException(
+                    "Виртуальные потоки требуют Java " + MIN_JAVA_VERSION + ", текущая версия " + Runtime.version()
+            );
+        }
+
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Не удалось создать исполнитель виртуальных потоков", e);
+        }
+    }
+}
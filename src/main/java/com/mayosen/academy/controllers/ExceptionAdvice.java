@@ -1,6 +1,8 @@
 package com.mayosen.academy.controllers;
 
+import com.mayosen.academy.exceptions.ImportQueueFullException;
 import com.mayosen.academy.exceptions.ItemNotFoundException;
+import com.mayosen.academy.exceptions.TicketNotFoundException;
 import com.mayosen.academy.responses.ErrorResponse;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -34,4 +36,14 @@ public class ExceptionAdvice {
     public ResponseEntity<ErrorResponse> handleNotFoundException() {
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ErrorResponse(404, "Item not found"));
     }
+
+    @ExceptionHandler(TicketNotFoundException.class)
+    public ResponseEntity<ErrorResponse> handleTicketNotFoundException() {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ErrorResponse(404, "Import not found"));
+    }
+
+    @ExceptionHandler(ImportQueueFullException.class)
+    public ResponseEntity<ErrorResponse> handleImportQueueFullException() {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(new ErrorResponse(429, "Too many imports"));
+    }
 }
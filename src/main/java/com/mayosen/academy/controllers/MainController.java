@@ -1,48 +1,141 @@
 package com.mayosen.academy.controllers;
 
 import com.mayosen.academy.requests.ItemImportRequest;
+import com.mayosen.academy.responses.imports.ImportTicketResponse;
 import com.mayosen.academy.responses.items.ItemResponse;
 import com.mayosen.academy.responses.updates.ItemHistoryResponse;
+import com.mayosen.academy.services.BulkImportService;
+import com.mayosen.academy.services.HistoryExportService;
+import com.mayosen.academy.services.ImportQueue;
 import com.mayosen.academy.services.ItemService;
+import com.mayosen.academy.services.LockRetry;
+import com.mayosen.academy.services.NodeCache;
+import com.mayosen.academy.services.NodeStreamService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import javax.validation.ValidationException;
+import java.io.IOException;
 import java.time.Instant;
 
 @RestController
 public class MainController {
     private final ItemService itemService;
+    private final BulkImportService bulkImportService;
+    private final NodeStreamService nodeStreamService;
+    private final HistoryExportService historyExportService;
+    private final ImportQueue importQueue;
+    private final LockRetry lockRetry;
+    private final NodeCache nodeCache;
+    private final boolean nodesStreaming;
 
     @Autowired
-    public MainController(ItemService importService) {
+    public MainController(
+            ItemService importService,
+            BulkImportService bulkImportService,
+            NodeStreamService nodeStreamService,
+            HistoryExportService historyExportService,
+            ImportQueue importQueue,
+            LockRetry lockRetry,
+            NodeCache nodeCache,
+            @Value("${academy.nodes.streaming:false}") boolean nodesStreaming
+    ) {
         this.itemService = importService;
+        this.bulkImportService = bulkImportService;
+        this.nodeStreamService = nodeStreamService;
+        this.historyExportService = historyExportService;
+        this.importQueue = importQueue;
+        this.lockRetry = lockRetry;
+        this.nodeCache = nodeCache;
+        this.nodesStreaming = nodesStreaming;
     }
 
+    /**
+     * В асинхронном режиме импорт ставится в очередь, и сразу возвращается 202 с идентификатором импорта.
+     */
     @PostMapping("/imports")
-    public void updateItems(@Valid @RequestBody ItemImportRequest request) {
-        itemService.updateItems(request);
+    public ResponseEntity<ImportTicketResponse> updateItems(@Valid @RequestBody ItemImportRequest request) {
+        if (importQueue.isEnabled()) {
+            return ResponseEntity.accepted().body(importQueue.submit(request));
+        }
+
+        lockRetry.run(() -> itemService.updateItems(request));
+        return ResponseEntity.ok().build();
+    }
+
+    @GetMapping("/imports/{ticketId}")
+    public ImportTicketResponse getImportStatus(@PathVariable String ticketId) {
+        return importQueue.getStatus(ticketId);
+    }
+
+    /**
+     * Импорт большого количества элементов через COPY. Формат запроса и проверки совпадают с /imports.
+     */
+    @PostMapping("/imports/bulk")
+    public void importItemsInBulk(@Valid @RequestBody ItemImportRequest request) {
+        lockRetry.run(() -> bulkImportService.importItems(request));
     }
 
     @DeleteMapping("/delete/{id}")
     public void deleteItem(@PathVariable String id, @RequestParam Instant date) {
-        itemService.deleteItem(id, date);
+        lockRetry.run(() -> itemService.deleteItem(id, date));
     }
 
     @DeleteMapping("/delete/")
     public void deleteItemWithBlankId(@RequestParam Instant date) {
-        itemService.deleteItem("", date);
+        lockRetry.run(() -> itemService.deleteItem("", date));
     }
 
     @GetMapping("/nodes/{id}")
-    public ResponseEntity<ItemResponse> getNode(@PathVariable String id) {
-        return ResponseEntity.ok(itemService.getNode(id));
+    public ResponseEntity<?> getNode(@PathVariable String id, HttpServletResponse response) throws IOException {
+        return getNodeResponse(id, response);
     }
 
     @GetMapping("/nodes/")
-    public ResponseEntity<ItemResponse> getNodeWithBlankId() {
-        return ResponseEntity.ok(itemService.getNode(""));
+    public ResponseEntity<?> getNodeWithBlankId(HttpServletResponse response) throws IOException {
+        return getNodeResponse("", response);
+    }
+
+    /**
+     * Закэшированный ответ отдается готовыми байтами вместе с ETag.
+     * Если ETag совпадает с If-None-Match, отдается 304 без тела.
+     * В потоковом режиме дерево пишется в ответ напрямую, минуя построение {@link ItemResponse}.
+     * Промах кэша в потоковом режиме тоже пишется напрямую, и такой ответ идет без ETag:
+     * он известен только после записи тела.
+     */
+    private ResponseEntity<?> getNodeResponse(String id, HttpServletResponse response) throws IOException {
+        NodeCache.CachedNode node = nodeCache.isEnabled() ? nodeCache.getIfPresent(id) : null;
+
+        if (node == null && nodesStreaming) {
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+
+            if (nodeCache.isEnabled()) {
+                nodeCache.write(id, response.getOutputStream());
+            } else {
+                nodeStreamService.writeNode(id, response.getOutputStream());
+            }
+
+            // Ответ уже записан
+            return null;
+        }
+
+        if (nodeCache.isEnabled()) {
+            if (node == null) {
+                node = nodeCache.get(id);
+            }
+
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .eTag(node.getEtag())
+                    .body(node.getPayload());
+        }
+
+        return ResponseEntity.ok(itemService.getNode(id));
     }
 
     @GetMapping("/updates")
@@ -54,16 +147,61 @@ public class MainController {
     public ResponseEntity<ItemHistoryResponse> getNodeHistory(
             @PathVariable String id,
             @RequestParam(required = false) Instant dateStart,
-            @RequestParam(required = false) Instant dateEnd
+            @RequestParam(required = false) Instant dateEnd,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit
     ) {
-        return ResponseEntity.ok(itemService.getNodeHistory(id, dateStart, dateEnd));
+        return ResponseEntity.ok(itemService.getNodeHistory(id, dateStart, dateEnd, cursor, limit));
     }
 
     @GetMapping({"/node//history", "/node/history"})
     public ResponseEntity<ItemHistoryResponse> getNodeWithBlankIdHistory(
             @RequestParam(required = false) Instant dateStart,
-            @RequestParam(required = false) Instant dateEnd
+            @RequestParam(required = false) Instant dateEnd,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit
     ) {
-        return ResponseEntity.ok(itemService.getNodeHistory("", dateStart, dateEnd));
+        return ResponseEntity.ok(itemService.getNodeHistory("", dateStart, dateEnd, cursor, limit));
+    }
+
+    @GetMapping("/node/{id}/history/export")
+    public void exportNodeHistory(
+            @PathVariable String id,
+            @RequestParam(required = false) Instant dateStart,
+            @RequestParam(required = false) Instant dateEnd,
+            @RequestParam(defaultValue = "json") String format,
+            HttpServletResponse response
+    ) throws IOException {
+        exportHistory(id, dateStart, dateEnd, format, response);
+    }
+
+    @GetMapping({"/node//history/export", "/node/history/export"})
+    public void exportNodeWithBlankIdHistory(
+            @RequestParam(required = false) Instant dateStart,
+            @RequestParam(required = false) Instant dateEnd,
+            @RequestParam(defaultValue = "json") String format,
+            HttpServletResponse response
+    ) throws IOException {
+        exportHistory("", dateStart, dateEnd, format, response);
+    }
+
+    /**
+     * История пишется в ответ по мере чтения: JSON-массивом или по объекту на строку (NDJSON).
+     */
+    private void exportHistory(
+            String id,
+            Instant dateStart,
+            Instant dateEnd,
+            String format,
+            HttpServletResponse response
+    ) throws IOException {
+        boolean ndjson = switch (format) {
+            case "json" -> false;
+            case "ndjson" -> true;
+            default -> throw new ValidationException("Неизвестный формат выгрузки");
+        };
+
+        response.setContentType(ndjson ? MediaType.APPLICATION_NDJSON_VALUE : MediaType.APPLICATION_JSON_VALUE);
+        historyExportService.writeHistory(id, dateStart, dateEnd, ndjson, response.getOutputStream());
     }
 }
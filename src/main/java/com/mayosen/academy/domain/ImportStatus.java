@@ -0,0 +1,11 @@
+package com.mayosen.academy.domain;
+
+/**
+ * Состояния асинхронного импорта.
+ */
+public enum ImportStatus {
+    QUEUED,
+    PROCESSING,
+    DONE,
+    FAILED
+}
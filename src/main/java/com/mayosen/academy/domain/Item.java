@@ -2,6 +2,7 @@ package com.mayosen.academy.domain;
 
 import com.mayosen.academy.requests.ItemImportRequest;
 import lombok.*;
+import org.springframework.data.domain.Persistable;
 
 import javax.persistence.*;
 import java.io.Serializable;
@@ -19,7 +20,7 @@ import java.util.Set;
 @NoArgsConstructor
 @EqualsAndHashCode(of = "id")
 @ToString(of = {"id", "type", "size"})
-public class Item implements Serializable {
+public class Item implements Persistable<String>, Serializable {
     @Id
     @Column(name = "item_id")
     private String id;
@@ -50,4 +51,24 @@ public class Item implements Serializable {
 
     @OneToMany(mappedBy = "parent", fetch = FetchType.LAZY)
     private Set<Item> children = new LinkedHashSet<>();
+
+    /**
+     * Признак того, что элемента еще нет в базе.
+     * Позволяет сохранять новые элементы через persist без предварительного SELECT, который делает merge.
+     */
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private boolean isNew = true;
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        isNew = false;
+    }
 }
@@ -16,12 +16,20 @@ import java.time.Instant;
 @Setter
 @NoArgsConstructor
 public class ItemUpdate {
+    /**
+     * Последовательность с шагом allocationSize позволяет Hibernate отправлять вставки пакетами,
+     * что невозможно с {@link GenerationType#IDENTITY}.
+     */
     @Id
     @Column(name = "update_id")
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "update_history_seq")
+    @SequenceGenerator(name = "update_history_seq", sequenceName = "update_history_seq", allocationSize = 50)
     private Long id;
 
-    @ManyToOne(fetch = FetchType.EAGER)
+    /**
+     * История читается проекциями без обращения к system_item, элемент нужен только при записи.
+     */
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "item_id")
     private Item item;
 
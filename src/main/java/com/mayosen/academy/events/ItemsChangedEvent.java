@@ -0,0 +1,19 @@
+package com.mayosen.academy.events;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Set;
+
+/**
+ * Событие об изменении элементов. Публикуется внутри транзакции,
+ * а обрабатывается слушателями после ее фиксации.
+ */
+@Getter
+@AllArgsConstructor
+public class ItemsChangedEvent {
+    /**
+     * Идентификаторы добавленных, обновленных и удаленных элементов, включая всех затронутых предков.
+     */
+    private Set<String> itemIds;
+}
@@ -0,0 +1,10 @@
+package com.mayosen.academy.exceptions;
+
+/**
+ * Исключение для случая, когда очередь асинхронных импортов заполнена.
+ */
+public class ImportQueueFullException extends RuntimeException {
+    public ImportQueueFullException() {
+        super("Очередь импортов заполнена");
+    }
+}
@@ -0,0 +1,10 @@
+package com.mayosen.academy.exceptions;
+
+/**
+ * Исключение для случая, когда импорт с таким идентификатором не найден или уже забыт.
+ */
+public class TicketNotFoundException extends RuntimeException {
+    public TicketNotFoundException() {
+        super("Импорт с таким id не существует");
+    }
+}
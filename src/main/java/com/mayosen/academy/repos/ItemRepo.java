@@ -1,14 +1,138 @@
 package com.mayosen.academy.repos;
 
 import com.mayosen.academy.domain.Item;
-import com.mayosen.academy.domain.ItemType;
+import com.mayosen.academy.responses.updates.ItemHistoryUnit;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface ItemRepo extends CrudRepository<Item, String> {
-    List<Item> findAllByDateBetweenAndType(Instant dateStart, Instant dateEnd, ItemType type);
+    /**
+     * Проекция файлов. Тип записан литералом, чтобы подходил частичный индекс system_item_file_date_index.
+     */
+    String FILE_UNIT = """
+            SELECT new com.mayosen.academy.responses.updates.ItemHistoryUnit(
+                i.id, i.url, i.parent.id, i.type, i.size, i.date
+            )
+            FROM Item i WHERE i.type = com.mayosen.academy.domain.ItemType.FILE
+            """;
+
+    List<Item> findAllByIdIn(Collection<String> ids);
+
+    /**
+     * Поиск файлов, обновленных за интервал [dateStart, dateEnd].
+     * @param dateStart начало интервала
+     * @param dateEnd конец интервала
+     * @return найденные файлы
+     */
+    @Query(FILE_UNIT + "AND i.date >= :dateStart AND i.date <= :dateEnd")
+    List<ItemHistoryUnit> findFilesUpdatedBetween(Instant dateStart, Instant dateEnd);
+
+    @Query(FILE_UNIT + "AND i.date >= :dateStart")
+    List<ItemHistoryUnit> findFilesUpdatedSince(Instant dateStart);
+
+    @Query(FILE_UNIT + "AND i.id IN :ids")
+    List<ItemHistoryUnit> findFilesByIdIn(Collection<String> ids);
+
+    @Query("SELECT MAX(i.date) FROM Item i WHERE i.type = com.mayosen.academy.domain.ItemType.FILE")
+    Instant findLatestFileDate();
+
+    /**
+     * Поиск всех предков элементов по таблице замыкания item_closure.
+     * @param ids идентификаторы элементов
+     * @return предки элементов без самих элементов
+     */
+    @Query(value = "SELECT * FROM system_item WHERE item_id IN (" +
+            "SELECT ancestor_id FROM item_closure WHERE descendant_id IN :ids AND depth > 0)",
+            nativeQuery = true)
+    List<Item> findAllAncestors(Collection<String> ids);
+
+    /**
+     * Поиск идентификаторов предков элементов по таблице замыкания.
+     * @param ids идентификаторы элементов
+     * @return идентификаторы предков без самих элементов
+     */
+    @Query(value = "SELECT DISTINCT ancestor_id FROM item_closure WHERE descendant_id IN :ids AND depth > 0",
+            nativeQuery = true)
+    List<String> findAncestorIdsIn(Collection<String> ids);
+
+    /**
+     * Блокировка строк элементов до конца транзакции.
+     * Строки блокируются по возрастанию идентификатора в побайтовом порядке, который совпадает с порядком строк Java.
+     * @param ids идентификаторы элементов
+     * @return идентификаторы заблокированных элементов
+     */
+    @Query(value = "SELECT item_id FROM system_item WHERE item_id IN :ids ORDER BY item_id COLLATE \"C\" FOR UPDATE",
+            nativeQuery = true)
+    List<String> lockAllByIdIn(Collection<String> ids);
+
+    /**
+     * Поиск идентификаторов предков элемента, начиная с ближайшего.
+     * @param id идентификатор элемента
+     * @return идентификаторы предков без самого элемента
+     */
+    @Query(value = "SELECT ancestor_id FROM item_closure WHERE descendant_id = :id AND depth > 0 ORDER BY depth",
+            nativeQuery = true)
+    List<String> findAncestorIds(String id);
+
+    /**
+     * Поиск идентификаторов всех потомков элемента.
+     * @param id идентификатор элемента
+     * @return идентификаторы потомков без самого элемента
+     */
+    @Query(value = "SELECT descendant_id FROM item_closure WHERE ancestor_id = :id AND depth > 0 ORDER BY depth",
+            nativeQuery = true)
+    List<String> findDescendantIds(String id);
+
+    /**
+     * Поиск высоты поддеревьев элементов по таблице замыкания.
+     * @param ids идентификаторы элементов
+     * @return наибольшая глубина потомка относительно каждого элемента
+     */
+    @Query(value = "SELECT ancestor_id AS id, MAX(depth) AS height FROM item_closure " +
+            "WHERE ancestor_id IN :ids GROUP BY ancestor_id",
+            nativeQuery = true)
+    List<SubtreeHeight> findSubtreeHeights(Collection<String> ids);
+
+    interface SubtreeHeight {
+        String getId();
+
+        int getHeight();
+    }
+
+    /**
+     * Поиск элемента вместе со всеми потомками одним запросом по таблице замыкания.
+     * Элементы упорядочены по глубине, поэтому родитель всегда идет раньше своих детей.
+     * @param id идентификатор корневого элемента
+     * @return корневой элемент и все его потомки или пустой список, если элемент не найден
+     */
+    @Query(value = "SELECT i.* FROM system_item i JOIN item_closure c ON c.descendant_id = i.item_id " +
+            "WHERE c.ancestor_id = :id ORDER BY c.depth",
+            nativeQuery = true)
+    List<Item> findSubtree(String id);
+
+    /**
+     * Уменьшение размера и обновление даты у цепочки предков одним запросом.
+     * Для каждого обновленного элемента добавляется запись в историю.
+     * @param id идентификатор первого обновляемого элемента
+     * @param depth количество обновляемых элементов цепочки, начиная с первого
+     * @param size величина, на которую уменьшается размер
+     * @param date дата обновления
+     * @return идентификаторы обновленных элементов
+     */
+    @Query(value = "WITH updated AS (" +
+            "UPDATE system_item i SET size = i.size - :size, date = :date " +
+            "FROM item_closure c " +
+            "WHERE c.descendant_id = :id AND c.depth < :depth AND i.item_id = c.ancestor_id " +
+            "RETURNING i.item_id, i.url, i.date, i.parent_id, i.type, i.size) " +
+            "INSERT INTO update_history(item_id, url, date, parent_id, type, size) " +
+            "SELECT item_id, url, date, parent_id, type, size FROM updated " +
+            "RETURNING item_id",
+            nativeQuery = true)
+    List<String> updateAncestors(String id, int depth, long size, Instant date);
 }
@@ -1,24 +1,71 @@
 package com.mayosen.academy.repos;
 
 import com.mayosen.academy.domain.ItemUpdate;
-import com.mayosen.academy.domain.Item;
+import com.mayosen.academy.responses.updates.ItemHistoryUnit;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
 import java.time.Instant;
 import java.util.List;
+import java.util.stream.Stream;
 
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
+/**
+ * Таблица update_history секционирована по месяцам поля date.
+ * Условия на date записываются напрямую через сравнение с параметром,
+ * чтобы планировщик отбрасывал секции вне интервала.
+ * История читается проекцией в {@link ItemHistoryUnit}: {@code u.item.id} берется из внешнего ключа
+ * без соединения с system_item, а результат не попадает в контекст Hibernate.
+ */
 @Repository
 public interface ItemUpdateRepo extends CrudRepository<ItemUpdate, Long> {
-    List<ItemUpdate> findAllByItem(Item item);
-
-    @Query("SELECT u FROM ItemUpdate u WHERE u.item = :item AND u.date >= :dateStart")
-    List<ItemUpdate> findAllByItemAndDateFrom(Item item, Instant dateStart);
+    String HISTORY_UNIT = """
+            SELECT new com.mayosen.academy.responses.updates.ItemHistoryUnit(
+                u.id, u.item.id, u.url, u.parentId, u.type, u.size, u.date
+            )
+            FROM ItemUpdate u
+            """;
 
-    @Query("SELECT u FROM ItemUpdate u WHERE u.item = :item AND u.date < :dateEnd")
-    List<ItemUpdate> findAllByItemAndDateTo(Item item, Instant dateEnd);
+    /**
+     * Страница истории элемента в порядке (date, id), начиная после позиции (afterDate, afterId).
+     * Обслуживается индексом update_item_date_index без сортировки и без пропуска строк через OFFSET.
+     * @param itemId идентификатор элемента
+     * @param dateStart начало интервала, включительно
+     * @param dateEnd конец интервала, не включительно
+     * @param afterDate дата последней строки предыдущей страницы
+     * @param afterId идентификатор последней строки предыдущей страницы
+     * @param pageable размер страницы
+     * @return найденные обновления
+     */
+    @Query(HISTORY_UNIT + """
+            WHERE u.item.id = :itemId AND u.date >= :dateStart AND u.date < :dateEnd
+              AND (u.date > :afterDate OR (u.date = :afterDate AND u.id > :afterId))
+            ORDER BY u.date, u.id""")
+    List<ItemHistoryUnit> findPage(
+            String itemId,
+            Instant dateStart,
+            Instant dateEnd,
+            Instant afterDate,
+            long afterId,
+            Pageable pageable
+    );
 
-    @Query("SELECT u FROM ItemUpdate u WHERE u.item = :item AND :dateStart <= u.date AND u.date < :dateEnd")
-    List<ItemUpdate> findAllByItemAndDateInterval(Item item, Instant dateStart, Instant dateEnd);
+    /**
+     * Вся история элемента за интервал в порядке (date, id) для потоковой выгрузки.
+     * Строки читаются из курсора порциями, поток нужно закрыть внутри транзакции.
+     * @param itemId идентификатор элемента
+     * @param dateStart начало интервала, включительно
+     * @param dateEnd конец интервала, не включительно
+     * @return поток обновлений
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query(HISTORY_UNIT + """
+            WHERE u.item.id = :itemId AND u.date >= :dateStart AND u.date < :dateEnd
+            ORDER BY u.date, u.id""")
+    Stream<ItemHistoryUnit> streamAll(String itemId, Instant dateStart, Instant dateEnd);
 }
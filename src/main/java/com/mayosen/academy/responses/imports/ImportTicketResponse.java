@@ -0,0 +1,26 @@
+package com.mayosen.academy.responses.imports;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.mayosen.academy.domain.ImportStatus;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Состояние асинхронного импорта.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportTicketResponse {
+    private String id;
+    private ImportStatus status;
+
+    /**
+     * Причина ошибки. Есть только у неуспешного импорта.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String message;
+}
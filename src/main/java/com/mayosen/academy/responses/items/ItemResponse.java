@@ -1,7 +1,5 @@
 package com.mayosen.academy.responses.items;
 
-import com.fasterxml.jackson.annotation.JsonIgnore;
-import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import com.mayosen.academy.domain.Item;
 import com.mayosen.academy.domain.ItemType;
@@ -26,13 +24,7 @@ public class ItemResponse {
 
     private ItemType type;
 
-    @JsonIgnore
-    private Item parent;
-
-    @JsonProperty("parentId")
-    public String getParentId() {
-        return parent != null ? parent.getId() : null;
-    }
+    private String parentId;
 
     private Instant date;
 
@@ -44,7 +36,7 @@ public class ItemResponse {
         id = item.getId();
         url = item.getUrl();
         type = item.getType();
-        parent = item.getParent();
+        parentId = item.getParent() != null ? item.getParent().getId() : null;
         date = item.getDate();
         size = item.getSize();
     }
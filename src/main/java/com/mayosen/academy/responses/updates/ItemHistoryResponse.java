@@ -1,5 +1,6 @@
 package com.mayosen.academy.responses.updates;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -16,4 +17,14 @@ import java.util.List;
 @AllArgsConstructor
 public class ItemHistoryResponse {
     private List<ItemHistoryUnit> items;
+
+    /**
+     * Курсор следующей страницы истории. Отсутствует на последней странице.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String next;
+
+    public ItemHistoryResponse(List<ItemHistoryUnit> items) {
+        this.items = items;
+    }
 }
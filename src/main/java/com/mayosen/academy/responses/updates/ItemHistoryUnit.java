@@ -1,6 +1,6 @@
 package com.mayosen.academy.responses.updates;
 
-import com.mayosen.academy.domain.ItemUpdate;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.mayosen.academy.domain.Item;
 import com.mayosen.academy.domain.ItemType;
 import lombok.AllArgsConstructor;
@@ -18,6 +18,12 @@ import java.time.Instant;
 @NoArgsConstructor
 @AllArgsConstructor
 public class ItemHistoryUnit {
+    /**
+     * Идентификатор записи истории для курсора страниц. Не входит в ответ.
+     */
+    @JsonIgnore
+    private Long updateId;
+
     private String id;
     private String url;
     private String parentId;
@@ -25,13 +31,8 @@ public class ItemHistoryUnit {
     private Long size;
     private Instant date;
 
-    public ItemHistoryUnit(ItemUpdate update) {
-        id = update.getItem().getId();
-        url = update.getUrl();
-        parentId = update.getParentId();
-        type = update.getType();
-        size = update.getSize();
-        date = update.getDate();
+    public ItemHistoryUnit(String id, String url, String parentId, ItemType type, Long size, Instant date) {
+        this(null, id, url, parentId, type, size, date);
     }
 
     public ItemHistoryUnit(Item item) {
@@ -0,0 +1,324 @@
+package com.mayosen.academy.services;
+
+import com.mayosen.academy.events.ItemsChangedEvent;
+import com.mayosen.academy.requests.ItemImport;
+import com.mayosen.academy.requests.ItemImportRequest;
+import io.micrometer.core.instrument.Timer;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.validation.ValidationException;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Массовая загрузка элементов для больших импортов.
+ * Элементы передаются в PostgreSQL через COPY во временную таблицу,
+ * после чего проверки, слияние, пересчет размеров и запись истории выполняются запросами над множествами,
+ * без загрузки сущностей в контекст Hibernate.
+ * Правила валидации совпадают с {@link ItemService#updateItems(ItemImportRequest)}.
+ */
+@Service
+public class BulkImportService {
+    private static final String CREATE_IMPORT_TABLE = """
+            CREATE TEMP TABLE import_item(
+                item_id VARCHAR(255) PRIMARY KEY,
+                url VARCHAR(255),
+                parent_id VARCHAR(255),
+                type VARCHAR(10) NOT NULL,
+                size bigint,
+                depth int,
+                moved boolean NOT NULL DEFAULT false
+            ) ON COMMIT DROP""";
+
+    private static final String CREATE_AFFECTED_TABLE = """
+            CREATE TEMP TABLE import_affected(item_id VARCHAR(255) PRIMARY KEY) ON COMMIT DROP""";
+
+    private static final String CREATE_DELTA_TABLE = """
+            CREATE TEMP TABLE import_delta(item_id VARCHAR(255) NOT NULL, size bigint NOT NULL) ON COMMIT DROP""";
+
+    private static final String COPY_IMPORT = """
+            COPY import_item(item_id, url, parent_id, type, size) FROM STDIN (FORMAT csv)""";
+
+    private static final String TYPE_CHANGED = """
+            SELECT EXISTS(
+                SELECT 1 FROM import_item n JOIN system_item i ON i.item_id = n.item_id WHERE i.type <> n.type
+            )""";
+
+    private static final String PARENT_NOT_FOUND = """
+            SELECT EXISTS(
+                SELECT 1 FROM import_item n
+                WHERE n.parent_id IS NOT NULL
+                  AND NOT EXISTS(SELECT 1 FROM import_item p WHERE p.item_id = n.parent_id)
+                  AND NOT EXISTS(SELECT 1 FROM system_item p WHERE p.item_id = n.parent_id)
+            )""";
+
+    private static final String PARENT_NOT_FOLDER = """
+            SELECT EXISTS(
+                SELECT 1 FROM import_item n
+                LEFT JOIN import_item np ON np.item_id = n.parent_id
+                LEFT JOIN system_item sp ON sp.item_id = n.parent_id
+                WHERE n.parent_id IS NOT NULL AND COALESCE(np.type, sp.type) <> 'FOLDER'
+            )""";
+
+    /**
+     * Глубина элемента среди элементов запроса. Элементы, входящие в цикл, глубину не получают.
+     */
+    private static final String SET_DEPTH = """
+            WITH RECURSIVE level AS (
+                SELECT n.item_id, 0 AS depth FROM import_item n
+                WHERE n.parent_id IS NULL OR NOT EXISTS(SELECT 1 FROM import_item p WHERE p.item_id = n.parent_id)
+                UNION ALL
+                SELECT n.item_id, level.depth + 1 FROM import_item n JOIN level ON n.parent_id = level.item_id
+            )
+            UPDATE import_item n SET depth = level.depth FROM level WHERE n.item_id = level.item_id""";
+
+    /**
+     * Блокировка элементов запроса, их новых родителей и всех их предков в том же порядке,
+     * что и в {@link ItemService}, чтобы параллельные импорты с общими предками выполнялись по очереди.
+     */
+    private static final String LOCK_AFFECTED = """
+            SELECT item_id FROM system_item WHERE item_id IN (
+                SELECT c.ancestor_id FROM item_closure c
+                WHERE c.descendant_id IN (SELECT item_id FROM import_item UNION SELECT parent_id FROM import_item)
+            )
+            ORDER BY item_id COLLATE "C" FOR UPDATE""";
+
+    /**
+     * Элементы запроса вместе со всеми предками по текущему состоянию таблицы замыкания.
+     * Выполняется до слияния, чтобы захватить старых предков, и после, чтобы захватить новых.
+     */
+    private static final String COLLECT_AFFECTED = """
+            INSERT INTO import_affected(item_id)
+            SELECT DISTINCT c.ancestor_id FROM import_item n JOIN item_closure c ON c.descendant_id = n.item_id
+            ON CONFLICT DO NOTHING""";
+
+    /**
+     * Сохраненные папки, которые переносятся к другому родителю. Выполняется до слияния.
+     */
+    private static final String MARK_MOVED = """
+            UPDATE import_item n SET moved = true FROM system_item i
+            WHERE i.item_id = n.item_id AND n.type = 'FOLDER' AND i.parent_id IS DISTINCT FROM n.parent_id""";
+
+    /**
+     * Вклад файлов в размеры их предков по текущему состоянию таблицы замыкания, умноженный на знак.
+     * Цепочка предков меняется только у файлов запроса и у файлов в поддеревьях перенесенных папок,
+     * поэтому остальные файлы не просматриваются. Выполняется до слияния со знаком минус,
+     * чтобы вычесть старые размеры из старых предков, и после со знаком плюс для новых.
+     */
+    private static final String COLLECT_DELTAS = """
+            INSERT INTO import_delta(item_id, size)
+            SELECT c.ancestor_id, SUM(f.size) * ?
+            FROM (
+                SELECT n.item_id FROM import_item n WHERE n.type = 'FILE'
+                UNION
+                SELECT d.descendant_id FROM import_item n JOIN item_closure d ON d.ancestor_id = n.item_id
+                WHERE n.moved
+            ) s
+            JOIN system_item f ON f.item_id = s.item_id AND f.type = 'FILE'
+            JOIN item_closure c ON c.descendant_id = f.item_id AND c.depth > 0
+            GROUP BY c.ancestor_id""";
+
+    /**
+     * Триггеры таблицы замыкания срабатывают по строкам в порядке вставки,
+     * поэтому родитель из запроса должен обрабатываться раньше своих детей.
+     * Размер сохраненной папки не меняется при слиянии, новая папка начинается с нуля.
+     */
+    private static final String MERGE_ITEMS = """
+            INSERT INTO system_item(item_id, url, date, parent_id, type, size)
+            SELECT item_id, url, ?, parent_id, type, COALESCE(size, 0) FROM import_item ORDER BY depth
+            ON CONFLICT (item_id) DO UPDATE SET
+                url = EXCLUDED.url,
+                date = EXCLUDED.date,
+                parent_id = EXCLUDED.parent_id,
+                size = CASE WHEN EXCLUDED.type = 'FOLDER' THEN system_item.size ELSE EXCLUDED.size END""";
+
+    /**
+     * Наибольшая глубина среди элементов запроса и их поддеревьев по таблице замыкания после слияния.
+     */
+    private static final String MAX_DEPTH = """
+            SELECT COALESCE(MAX(
+                (SELECT MAX(depth) FROM item_closure WHERE descendant_id = n.item_id)
+                + (SELECT MAX(depth) FROM item_closure WHERE ancestor_id = n.item_id)
+            ), 0) FROM import_item n""";
+
+    /**
+     * Изменение размеров затронутых папок на собранные разности без пересчета поддеревьев.
+     * Дата обновляется у всех затронутых папок, в том числе у тех, чей размер не изменился.
+     */
+    private static final String APPLY_DELTAS = """
+            UPDATE system_item f SET size = f.size + COALESCE(d.size, 0), date = ?
+            FROM import_affected a
+            LEFT JOIN (SELECT item_id, SUM(size) AS size FROM import_delta GROUP BY item_id) d ON d.item_id = a.item_id
+            WHERE f.item_id = a.item_id AND f.type = 'FOLDER'""";
+
+    private static final String INSERT_HISTORY = """
+            INSERT INTO update_history(item_id, url, date, parent_id, type, size)
+            SELECT i.item_id, i.url, i.date, i.parent_id, i.type, i.size
+            FROM system_item i JOIN import_affected a ON a.item_id = i.item_id""";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ItemMetrics metrics;
+    private final int maxDepth;
+
+    @Autowired
+    public BulkImportService(
+            JdbcTemplate jdbcTemplate,
+            ApplicationEventPublisher eventPublisher,
+            ItemMetrics metrics,
+            @Value("${academy.imports.max-depth:1000}") int maxDepth
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+        this.metrics = metrics;
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Добавление и обновление элементов через COPY.
+     * @param request объект с обновляемыми элементами
+     * @throws ValidationException ошибка валидации данных
+     */
+    @Transactional
+    public void importItems(ItemImportRequest request) {
+        List<ItemImport> items = request.getItems();
+        OffsetDateTime updateDate = OffsetDateTime.ofInstant(request.getUpdateDate(), ZoneOffset.UTC);
+
+        Timer.Sample phase = metrics.startPhase();
+        jdbcTemplate.execute(CREATE_IMPORT_TABLE);
+        jdbcTemplate.execute(CREATE_AFFECTED_TABLE);
+        jdbcTemplate.execute(CREATE_DELTA_TABLE);
+        copyItems(items);
+
+        if (isTrue(TYPE_CHANGED)) {
+            throw new ValidationException("Нельзя менять тип элемента");
+        } else if (isTrue(PARENT_NOT_FOUND)) {
+            throw new ValidationException("Родитель не найден");
+        } else if (isTrue(PARENT_NOT_FOLDER)) {
+            throw new ValidationException("Родителем может быть только папка");
+        } else if (jdbcTemplate.update(SET_DEPTH) < items.size()) {
+            throw new ValidationException("Элементы запроса образуют цикл");
+        }
+
+        metrics.stopPhase(phase, ItemMetrics.BULK, ItemMetrics.VALIDATION);
+        phase = metrics.startPhase();
+        lockAffected();
+        jdbcTemplate.update(COLLECT_AFFECTED);
+        jdbcTemplate.update(MARK_MOVED);
+        jdbcTemplate.update(COLLECT_DELTAS, -1);
+        metrics.stopPhase(phase, ItemMetrics.BULK, ItemMetrics.READ);
+        phase = metrics.startPhase();
+
+        try {
+            jdbcTemplate.update(MERGE_ITEMS, updateDate);
+        } catch (DataIntegrityViolationException e) {
+            // Триггер таблицы замыкания запрещает перенос элемента в собственное поддерево
+            throw new ValidationException("Элементы образуют цикл");
+        }
+
+        // Превышение откатывает слияние вместе с транзакцией
+        Integer depth = jdbcTemplate.queryForObject(MAX_DEPTH, Integer.class);
+
+        if (depth != null && depth > maxDepth) {
+            throw new ValidationException("Превышена глубина вложенности " + maxDepth);
+        }
+
+        jdbcTemplate.update(COLLECT_AFFECTED);
+        jdbcTemplate.update(COLLECT_DELTAS, 1);
+        jdbcTemplate.update(APPLY_DELTAS, updateDate);
+        int historyRows = jdbcTemplate.update(INSERT_HISTORY);
+        metrics.stopPhase(phase, ItemMetrics.BULK, ItemMetrics.WRITE);
+
+        List<String> changedIds = jdbcTemplate.queryForList("SELECT item_id FROM import_affected", String.class);
+        // Затронутые элементы - элементы запроса и все их старые и новые предки, каждый из них записан
+        metrics.recordImport(ItemMetrics.BULK, items.size(), changedIds.size(), historyRows);
+        metrics.recordAncestors("import", changedIds.size() - items.size());
+        eventPublisher.publishEvent(new ItemsChangedEvent(new HashSet<>(changedIds)));
+    }
+
+    /**
+     * Блокировка повторяется, пока множество предков не перестанет меняться: параллельный перенос,
+     * завершившийся во время ожидания, мог изменить цепочку, прочитанную до блокировки.
+     * Новые предки могут оказаться меньше уже заблокированных строк, такую взаимную блокировку
+     * разрывает база, и импорт повторяется через {@link LockRetry}.
+     */
+    private void lockAffected() {
+        Set<String> locked = new HashSet<>(jdbcTemplate.queryForList(LOCK_AFFECTED, String.class));
+        Set<String> relocked = new HashSet<>(jdbcTemplate.queryForList(LOCK_AFFECTED, String.class));
+
+        while (!relocked.equals(locked)) {
+            locked = relocked;
+            relocked = new HashSet<>(jdbcTemplate.queryForList(LOCK_AFFECTED, String.class));
+        }
+    }
+
+    /**
+     * Передача элементов во временную таблицу в формате CSV.
+     * Поля проверяются по мере записи, до обращения к сохраненным элементам.
+     * @param items импортируемые элементы
+     * @throws ValidationException ошибка валидации данных
+     */
+    private void copyItems(List<ItemImport> items) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            PGConnection pgConnection = connection.unwrap(PGConnection.class);
+
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                    new PGCopyOutputStream(pgConnection, COPY_IMPORT), StandardCharsets.UTF_8))) {
+                for (ItemImport item : items) {
+                    ItemService.validateImport(item);
+                    writeCsvValue(writer, item.getId());
+                    writer.write(',');
+                    writeCsvValue(writer, item.getUrl());
+                    writer.write(',');
+                    writeCsvValue(writer, item.getParentId());
+                    writer.write(',');
+                    writer.write(item.getType().name());
+                    writer.write(',');
+
+                    if (item.getSize() != null) {
+                        writer.write(item.getSize().toString());
+                    }
+
+                    writer.write('\n');
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            return null;
+        });
+    }
+
+    /**
+     * Строки всегда пишутся в кавычках, чтобы отличать пустую строку от NULL.
+     */
+    private static void writeCsvValue(Writer writer, String value) throws IOException {
+        if (value != null) {
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+    }
+
+    private boolean isTrue(String query) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(query, Boolean.class));
+    }
+}
@@ -0,0 +1,81 @@
+package com.mayosen.academy.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mayosen.academy.exceptions.ItemNotFoundException;
+import com.mayosen.academy.repos.ItemRepo;
+import com.mayosen.academy.repos.ItemUpdateRepo;
+import com.mayosen.academy.responses.updates.ItemHistoryUnit;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Потоковая выгрузка истории обновлений элемента.
+ * Обновления читаются курсором и пишутся в выходной поток по одному,
+ * поэтому расход памяти не зависит от длины истории.
+ */
+@Service
+public class HistoryExportService {
+    private final ItemRepo itemRepo;
+    private final ItemUpdateRepo itemUpdateRepo;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public HistoryExportService(ItemRepo itemRepo, ItemUpdateRepo itemUpdateRepo, ObjectMapper objectMapper) {
+        this.itemRepo = itemRepo;
+        this.itemUpdateRepo = itemUpdateRepo;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Запись истории элемента за полуинтервал [dateStart, dateEnd) в порядке дат.
+     * Курсор PostgreSQL работает только внутри транзакции.
+     * @param id идентификатор элемента
+     * @param dateStart начало интервала или null
+     * @param dateEnd конец интервала или null
+     * @param ndjson писать по объекту {@link ItemHistoryUnit} на строку вместо JSON-массива
+     * @param out выходной поток. В него ничего не пишется, если элемент не найден
+     * @throws ItemNotFoundException запрашиваемый элемент не найден
+     */
+    @Transactional(readOnly = true)
+    public void writeHistory(String id, Instant dateStart, Instant dateEnd, boolean ndjson, OutputStream out)
+            throws IOException {
+        if (!itemRepo.existsById(id)) {
+            throw new ItemNotFoundException();
+        }
+
+        Instant from = dateStart != null ? dateStart : ItemService.MIN_HISTORY_DATE;
+        Instant to = dateEnd != null ? dateEnd : ItemService.MAX_HISTORY_DATE;
+
+        try (Stream<ItemHistoryUnit> units = itemUpdateRepo.streamAll(id, from, to);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+
+            if (!ndjson) {
+                generator.writeStartArray();
+            }
+
+            Iterator<ItemHistoryUnit> iterator = units.iterator();
+
+            while (iterator.hasNext()) {
+                generator.writeObject(iterator.next());
+
+                if (ndjson) {
+                    generator.writeRaw('\n');
+                }
+            }
+
+            if (!ndjson) {
+                generator.writeEndArray();
+            }
+        }
+    }
+}
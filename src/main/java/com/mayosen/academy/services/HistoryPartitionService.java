@@ -0,0 +1,70 @@
+package com.mayosen.academy.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Заблаговременное создание помесячных секций таблицы update_history.
+ * Пока секция месяца не создана, его строки попадают в секцию по умолчанию,
+ * которую приходится просматривать в каждом запросе истории.
+ */
+@Slf4j
+@Service
+public class HistoryPartitionService {
+    private final JdbcTemplate jdbcTemplate;
+    private final int monthsAhead;
+
+    @Autowired
+    public HistoryPartitionService(
+            JdbcTemplate jdbcTemplate,
+            @Value("${academy.history.partitions.months-ahead:3}") int monthsAhead
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.monthsAhead = monthsAhead;
+    }
+
+    /**
+     * Создание секций при запуске.
+     * Ошибка не должна останавливать запуск, недостающие секции создаст следующий запуск по расписанию.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void createPartitionsOnStartup() {
+        try {
+            createPartitions();
+        } catch (RuntimeException e) {
+            log.error("Failed to create update_history partitions on startup", e);
+        }
+    }
+
+    /**
+     * Создание секций с текущего месяца на {@code months-ahead} месяцев вперед.
+     * @return количество созданных секций
+     */
+    @Scheduled(cron = "${academy.history.partitions.cron:0 0 3 * * *}", zone = "UTC")
+    public int createPartitions() {
+        OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+        return createPartitions(now, now.plusMonths(monthsAhead));
+    }
+
+    /**
+     * Создание недостающих секций для месяцев с {@code from} по {@code to} включительно.
+     * @param from дата в первом месяце
+     * @param to дата в последнем месяце
+     * @return количество созданных секций
+     */
+    public int createPartitions(OffsetDateTime from, OffsetDateTime to) {
+        Integer created = jdbcTemplate.queryForObject(
+                "SELECT create_update_history_partitions(?, ?)", Integer.class, from, to
+        );
+        return created != null ? created : 0;
+    }
+}
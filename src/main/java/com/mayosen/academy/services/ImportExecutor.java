@@ -0,0 +1,80 @@
+package com.mayosen.academy.services;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Выполнение вычислительных стадий импорта на отдельном ForkJoin-пуле.
+ * Диапазон индексов делится пополам, пока порция не станет меньше {@code chunk-size}.
+ * Небольшие запросы обрабатываются в вызывающем потоке, где накладные расходы пула не окупаются.
+ * Работа с базой в пул не передается.
+ */
+@Component
+public class ImportExecutor {
+    private final ForkJoinPool pool;
+    private final int parallelThreshold;
+    private final int chunkSize;
+
+    @Autowired
+    public ImportExecutor(
+            @Value("${academy.imports.parallelism:0}") int parallelism,
+            @Value("${academy.imports.parallel-threshold:5000}") int parallelThreshold,
+            @Value("${academy.imports.chunk-size:1000}") int chunkSize
+    ) {
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        this.parallelThreshold = parallelThreshold;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Выполнение действия для каждого индекса из [0, size).
+     * Действия для разных индексов не должны изменять общие данные.
+     * Исключение из любой порции пробрасывается вызывающему потоку.
+     * @param size количество индексов
+     * @param action действие для одного индекса
+     */
+    public void forEachIndex(int size, IntConsumer action) {
+        if (size < parallelThreshold) {
+            for (int i = 0; i < size; i++) {
+                action.accept(i);
+            }
+        } else {
+            pool.invoke(new RangeAction(0, size, action));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private class RangeAction extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final IntConsumer action;
+
+        RangeAction(int from, int to, IntConsumer action) {
+            this.from = from;
+            this.to = to;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= chunkSize) {
+                for (int i = from; i < to; i++) {
+                    action.accept(i);
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new RangeAction(from, middle, action), new RangeAction(middle, to, action));
+            }
+        }
+    }
+}
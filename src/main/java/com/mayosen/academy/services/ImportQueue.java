@@ -0,0 +1,252 @@
+package com.mayosen.academy.services;
+
+import com.mayosen.academy.domain.ImportStatus;
+import com.mayosen.academy.exceptions.ImportQueueFullException;
+import com.mayosen.academy.exceptions.TicketNotFoundException;
+import com.mayosen.academy.requests.ItemImportRequest;
+import com.mayosen.academy.responses.imports.ImportTicketResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.validation.ValidationException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Асинхронный режим POST /imports.
+ * Запрос после проверки полей попадает в ограниченную очередь, а клиент получает идентификатор импорта.
+ * Единственный обработчик забирает из очереди подряд идущие импорты и применяет их в одной транзакции.
+ * Каждый импорт проверяется и применяется своим вызовом {@link ItemService#updateItems},
+ * поэтому элементы соседних импортов не скрывают ошибки друг друга.
+ * Если общая транзакция не удалась, импорты повторяются по одному, чтобы ошибка досталась только своему импорту.
+ * Очередь хранится в памяти и не переживает перезапуск приложения.
+ */
+@Slf4j
+@Component
+public class ImportQueue {
+    private static final Duration POLL_TIMEOUT = Duration.ofMillis(200);
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(30);
+
+    private final ItemService itemService;
+    private final LockRetry lockRetry;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int maxBatchItems;
+    private final int retainedTickets;
+
+    private final BlockingQueue<Ticket> queue;
+    private final Map<String, Ticket> tickets = new ConcurrentHashMap<>();
+    /**
+     * Завершенные импорты в порядке завершения. Используется только обработчиком.
+     */
+    private final Deque<String> finished = new ArrayDeque<>();
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private volatile boolean running;
+    private Thread worker;
+
+    @Autowired
+    public ImportQueue(
+            ItemService itemService,
+            LockRetry lockRetry,
+            TransactionTemplate transactionTemplate,
+            @Value("${academy.imports.async.enabled:false}") boolean enabled,
+            @Value("${academy.imports.async.queue-capacity:1000}") int queueCapacity,
+            @Value("${academy.imports.async.max-batch-items:10000}") int maxBatchItems,
+            @Value("${academy.imports.async.retained-tickets:10000}") int retainedTickets
+    ) {
+        this.itemService = itemService;
+        this.lockRetry = lockRetry;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatchItems = maxBatchItems;
+        this.retainedTickets = retainedTickets;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Постановка импорта в очередь.
+     * @param request объект с обновляемыми элементами
+     * @return состояние поставленного импорта
+     * @throws ValidationException ошибка в полях элементов
+     * @throws ImportQueueFullException очередь заполнена
+     */
+    public ImportTicketResponse submit(ItemImportRequest request) {
+        request.getItems().forEach(ItemService::validateImport);
+        Ticket ticket = new Ticket(UUID.randomUUID().toString(), request);
+        // Ответ строится до постановки в очередь, пока обработчик не изменил состояние
+        ImportTicketResponse response = ticket.toResponse();
+        tickets.put(ticket.id, ticket);
+
+        if (!queue.offer(ticket)) {
+            tickets.remove(ticket.id);
+            throw new ImportQueueFullException();
+        }
+
+        return response;
+    }
+
+    /**
+     * Получение состояния импорта.
+     * @param id идентификатор импорта
+     * @return состояние импорта
+     * @throws TicketNotFoundException импорт не найден
+     */
+    public ImportTicketResponse getStatus(String id) {
+        Ticket ticket = tickets.get(id);
+
+        if (ticket == null) {
+            throw new TicketNotFoundException();
+        }
+
+        return ticket.toResponse();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+
+        running = true;
+        worker = new Thread(this::drain, "import-queue");
+        worker.start();
+    }
+
+    /**
+     * Остановка после обработки уже принятых импортов.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+
+        if (worker != null) {
+            worker.join(SHUTDOWN_TIMEOUT.toMillis());
+        }
+    }
+
+    private void drain() {
+        while (running || !queue.isEmpty()) {
+            Ticket first;
+
+            try {
+                first = queue.poll(POLL_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            if (first == null) {
+                continue;
+            }
+
+            List<Ticket> batch = new ArrayList<>();
+            batch.add(first);
+            int items = first.request.getItems().size();
+
+            // Обработчик единственный, поэтому просмотренный импорт никто не заберет
+            for (Ticket next = queue.peek();
+                 next != null && items + next.request.getItems().size() <= maxBatchItems;
+                 next = queue.peek()) {
+                batch.add(queue.poll());
+                items += next.request.getItems().size();
+            }
+
+            process(batch);
+        }
+    }
+
+    private void process(List<Ticket> batch) {
+        batch.forEach(ticket -> ticket.status = ImportStatus.PROCESSING);
+
+        try {
+            apply(batch);
+            batch.forEach(ticket -> complete(ticket, null));
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                complete(batch.get(0), e);
+                return;
+            }
+
+            for (Ticket ticket : batch) {
+                try {
+                    apply(List.of(ticket));
+                    complete(ticket, null);
+                } catch (RuntimeException ticketException) {
+                    complete(ticket, ticketException);
+                }
+            }
+        }
+    }
+
+    /**
+     * Применение импортов в одной транзакции.
+     * Контекст Hibernate очищается между вызовами, так как запросы к предкам изменяют строки в обход сущностей.
+     */
+    private void apply(List<Ticket> batch) {
+        lockRetry.run(() -> transactionTemplate.executeWithoutResult(status -> {
+            for (Ticket ticket : batch) {
+                itemService.updateItems(ticket.request);
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }));
+    }
+
+    private void complete(Ticket ticket, RuntimeException exception) {
+        if (exception == null) {
+            ticket.status = ImportStatus.DONE;
+        } else {
+            if (exception instanceof ValidationException) {
+                ticket.message = "Validation failed";
+            } else {
+                log.error("Import {} failed", ticket.id, exception);
+                ticket.message = "Import failed";
+            }
+
+            ticket.status = ImportStatus.FAILED;
+        }
+
+        // Запрос больше не нужен, а состояние хранится, пока не вытеснено более новыми
+        ticket.request = null;
+        finished.addLast(ticket.id);
+
+        while (finished.size() > retainedTickets) {
+            tickets.remove(finished.removeFirst());
+        }
+    }
+
+    private static class Ticket {
+        final String id;
+        volatile ItemImportRequest request;
+        volatile ImportStatus status = ImportStatus.QUEUED;
+        volatile String message;
+
+        Ticket(String id, ItemImportRequest request) {
+            this.id = id;
+            this.request = request;
+        }
+
+        ImportTicketResponse toResponse() {
+            return new ImportTicketResponse(id, status, message);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.mayosen.academy.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Метрики операций с элементами.
+ * Задержки HTTP-запросов по эндпоинтам собирает Spring Boot в http.server.requests,
+ * здесь - то, что видно только изнутри сервиса: этапы импорта, объем записи и размеры обходов.
+ */
+@Component
+public class ItemMetrics {
+    /**
+     * Способ импорта: обычный через Hibernate и массовый через COPY.
+     */
+    public static final String REGULAR = "regular";
+    public static final String BULK = "bulk";
+
+    /**
+     * Этапы импорта: проверка данных, блокировка и чтение сохраненных элементов,
+     * вычисления в памяти и запись в базу. В массовом импорте проверка включает передачу элементов через COPY.
+     */
+    public static final String VALIDATION = "validation";
+    public static final String READ = "read";
+    public static final String COMPUTE = "compute";
+    public static final String WRITE = "write";
+
+    private final MeterRegistry registry;
+
+    @Autowired
+    public ItemMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public Timer.Sample startPhase() {
+        return Timer.start(registry);
+    }
+
+    /**
+     * Завершение этапа импорта, начатого {@link #startPhase()}.
+     */
+    public void stopPhase(Timer.Sample sample, String mode, String phase) {
+        sample.stop(Timer.builder("academy.imports.phase")
+                .description("Длительность этапа импорта")
+                .tags("mode", mode, "phase", phase)
+                .register(registry));
+    }
+
+    /**
+     * Итоги успешного импорта.
+     * @param batchSize количество элементов в запросе
+     * @param itemsWritten записанные элементы вместе с пересчитанными предками
+     * @param historyRows добавленные строки истории
+     */
+    public void recordImport(String mode, int batchSize, long itemsWritten, long historyRows) {
+        DistributionSummary.builder("academy.imports.batch.size")
+                .description("Количество элементов в запросе импорта")
+                .baseUnit("items")
+                .tag("mode", mode)
+                .register(registry)
+                .record(batchSize);
+        itemsWritten(mode).increment(itemsWritten);
+        historyRows(mode).increment(historyRows);
+    }
+
+    /**
+     * Количество предков, размер которых изменился в результате одной операции.
+     * @param operation import или delete
+     */
+    public void recordAncestors(String operation, int count) {
+        DistributionSummary.builder("academy.ancestors.updated")
+                .description("Количество предков, пересчитанных одной операцией")
+                .baseUnit("items")
+                .tag("operation", operation)
+                .register(registry)
+                .record(count);
+    }
+
+    /**
+     * Количество элементов поддерева, прочитанных для ответа GET /nodes/{id}.
+     */
+    public void recordSubtree(int nodes) {
+        DistributionSummary.builder("academy.nodes.subtree.size")
+                .description("Количество элементов в поддереве ответа /nodes")
+                .baseUnit("items")
+                .register(registry)
+                .record(nodes);
+    }
+
+    private Counter itemsWritten(String mode) {
+        return Counter.builder("academy.items.written")
+                .description("Записанные элементы")
+                .tag("mode", mode)
+                .register(registry);
+    }
+
+    private Counter historyRows(String mode) {
+        return Counter.builder("academy.history.rows.written")
+                .description("Добавленные строки истории")
+                .tag("mode", mode)
+                .register(registry);
+    }
+}
@@ -3,6 +3,7 @@ package com.mayosen.academy.services;
 import com.mayosen.academy.domain.ItemUpdate;
 import com.mayosen.academy.domain.Item;
 import com.mayosen.academy.domain.ItemType;
+import com.mayosen.academy.events.ItemsChangedEvent;
 import com.mayosen.academy.exceptions.ItemNotFoundException;
 import com.mayosen.academy.repos.ItemUpdateRepo;
 import com.mayosen.academy.repos.ItemRepo;
@@ -11,26 +12,70 @@ import com.mayosen.academy.requests.ItemImportRequest;
 import com.mayosen.academy.responses.items.ItemResponse;
 import com.mayosen.academy.responses.updates.ItemHistoryResponse;
 import com.mayosen.academy.responses.updates.ItemHistoryUnit;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
 import javax.validation.ValidationException;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.function.Function;
 
 @Service
 public class ItemService {
     private final ItemRepo itemRepo;
     private final ItemUpdateRepo itemUpdateRepo;
+    private final ApplicationEventPublisher eventPublisher;
+    private final RecentFiles recentFiles;
+    private final ImportExecutor importExecutor;
+    private final ItemMetrics metrics;
+    private final int historyPageSize;
+    private final int maxDepth;
 
     @Autowired
-    public ItemService(ItemRepo itemRepo, ItemUpdateRepo itemUpdateRepo) {
+    public ItemService(
+            ItemRepo itemRepo,
+            ItemUpdateRepo itemUpdateRepo,
+            ApplicationEventPublisher eventPublisher,
+            RecentFiles recentFiles,
+            ImportExecutor importExecutor,
+            ItemMetrics metrics,
+            @Value("${academy.history.page-size:1000}") int historyPageSize,
+            @Value("${academy.imports.max-depth:1000}") int maxDepth
+    ) {
         this.itemRepo = itemRepo;
         this.itemUpdateRepo = itemUpdateRepo;
+        this.eventPublisher = eventPublisher;
+        this.recentFiles = recentFiles;
+        this.importExecutor = importExecutor;
+        this.metrics = metrics;
+        this.historyPageSize = historyPageSize;
+        this.maxDepth = maxDepth;
     }
 
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Максимальное количество идентификаторов в одном запросе предварительной выборки.
+     */
+    private static final int PREFETCH_CHUNK_SIZE = 1000;
+
+    /**
+     * Границы интервала истории, если они не заданы в запросе.
+     */
+    static final Instant MIN_HISTORY_DATE = Instant.parse("0001-01-01T00:00:00Z");
+    static final Instant MAX_HISTORY_DATE = Instant.parse("9999-12-31T23:59:59Z");
+
     /**
      * Добавление и обновление элементов.
      * @param request объект с обновляемыми элементами
@@ -39,29 +84,35 @@ public class ItemService {
     @Transactional
     public void updateItems(ItemImportRequest request) {
         Instant updateDate = request.getUpdateDate();
-        int itemsSize = request.getItems().size();
+        List<ItemImport> importItems = request.getItems();
+        int itemsSize = importItems.size();
+        Timer.Sample phase = metrics.startPhase();
+        // Проверка полей не требует базы и выполняется до предварительной выборки
+        importExecutor.forEachIndex(itemsSize, i -> validateImport(importItems.get(i)));
+        metrics.stopPhase(phase, ItemMetrics.REGULAR, ItemMetrics.VALIDATION);
+        phase = metrics.startPhase();
+        Map<String, Item> storedItems = prefetchItems(importItems);
+        metrics.stopPhase(phase, ItemMetrics.REGULAR, ItemMetrics.READ);
+        phase = metrics.startPhase();
         // Таблица для быстрого поиска новых родителей из запроса
         Map<String, Item> mappedItems = new HashMap<>(itemsSize);
-
-        for (ItemImport importItem : request.getItems()) {
-            Item item = itemRepo.findById(importItem.getId()).orElseGet(Item::new);
-
-            if (item.getId() != null && importItem.getType() != item.getType()) {
+        // Элементы запроса в порядке запроса
+        Item[] batchItems = new Item[itemsSize];
+        // Старые родители и размеры элементов запроса до обновления
+        Item[] oldParents = new Item[itemsSize];
+        long[] oldSizes = new long[itemsSize];
+
+        for (int i = 0; i < itemsSize; i++) {
+            ItemImport importItem = importItems.get(i);
+            Item item = storedItems.get(importItem.getId());
+
+            if (item == null) {
+                item = new Item();
+            } else if (importItem.getType() != item.getType()) {
                 throw new ValidationException("Нельзя менять тип элемента");
-            }
-
-            if (importItem.getType() == ItemType.FOLDER) {
-                if (importItem.getUrl() != null) {
-                    throw new ValidationException("Поле url должно быть пустым у папки");
-                } else if (importItem.getSize() != null) {
-                    throw new ValidationException("Поле size должно быть пустым у папки");
-                }
             } else {
-                if (importItem.getUrl() == null) {
-                    throw new ValidationException("Поле url не должно быть пустым у файла");
-                } else if (importItem.getSize() == null || !(importItem.getSize() > 0)) {
-                    throw new ValidationException("Поле size должно быть больше 0 у файла");
-                }
+                oldParents[i] = getStoredParent(item, storedItems);
+                oldSizes[i] = item.getSize();
             }
 
             item.setId(importItem.getId());
@@ -75,265 +126,459 @@ public class ItemService {
             }
 
             mappedItems.put(item.getId(), item);
+            batchItems[i] = item;
         }
 
-        List<ItemParentPair> oldParents = new ArrayList<>();
+        // Поиск новых родителей только читает таблицы, поэтому выполняется параллельно
+        Item[] parents = new Item[itemsSize];
+        importExecutor.forEachIndex(itemsSize, i -> parents[i] = findNewParent(batchItems[i], mappedItems, storedItems));
 
-        for (Item item : mappedItems.values()) {
-            String newParentId = item.getNewParentId();
+        // Новые родители элементов запроса
+        Map<String, Item> newParents = new HashMap<>(itemsSize);
 
-            // Если есть старый родитель, id которого отличается от обновляемого (включая null)
-            if (item.getParent() != null && !item.getParent().getId().equals(newParentId)) {
-                oldParents.add(new ItemParentPair(item));
+        for (int i = 0; i < itemsSize; i++) {
+            if (parents[i] != null) {
+                newParents.put(batchItems[i].getId(), parents[i]);
             }
+        }
 
-            if (newParentId != null) {
-                Item parent = mappedItems.get(newParentId);
+        // Элементы запроса и все их новые предки, размер которых будет пересчитан ниже
+        Map<String, Integer> nodeIndex = new HashMap<>(itemsSize * 2);
+        List<Item> nodes = new ArrayList<>(itemsSize * 2);
 
-                if (parent == null) {
-                    parent = itemRepo.findById(newParentId)
-                            .orElseThrow(() -> new ValidationException("Родитель не найден"));
-                }
+        for (Item item : batchItems) {
+            Item current = item;
+
+            while (current != null && nodeIndex.putIfAbsent(current.getId(), nodes.size()) == null) {
+                nodes.add(current);
+                current = mappedItems.containsKey(current.getId())
+                        ? newParents.get(current.getId())
+                        : getStoredParent(current, storedItems);
+            }
+        }
+
+        int nodeCount = nodes.size();
+        SizeRollUp rollUp = new SizeRollUp(nodeCount, maxDepth);
+
+        for (int i = 0; i < nodeCount; i++) {
+            Item node = nodes.get(i);
+            boolean imported = mappedItems.containsKey(node.getId());
+            Item parent = imported ? newParents.get(node.getId()) : getStoredParent(node, storedItems);
+            // У файлов запроса уже новый размер, у папок - сохраненный или нулевой для новых
+            long size = node.getSize() != null ? node.getSize() : 0;
+            rollUp.addSize(i, size);
+
+            if (parent != null) {
+                int parentIndex = nodeIndex.get(parent.getId());
+                rollUp.setParent(i, parentIndex);
 
-                if (parent.getType() != ItemType.FOLDER) {
-                    throw new ValidationException("Родителем может быть только папка");
+                if (!imported) {
+                    // Родитель предка не меняется, а его старый размер уже входит в размер родителя
+                    rollUp.addSize(parentIndex, -size);
                 }
+            }
+        }
+
+        // Перенесенные папки увеличивают глубину всего своего сохраненного поддерева
+        List<String> movedFolderIds = new ArrayList<>();
+
+        for (int i = 0; i < itemsSize; i++) {
+            Item item = batchItems[i];
 
-                item.setParent(parent);
-                parent.getChildren().add(item);
+            if (item.getType() == ItemType.FOLDER && oldParents[i] != newParents.get(item.getId())) {
+                movedFolderIds.add(item.getId());
             }
         }
 
-        for (ItemParentPair pair : oldParents) {
-            Item oldParent = pair.oldParent;
-            Item item = pair.item;
-            oldParent.getChildren().remove(item);
-            Item current = item;
-            Set<Item> newParentsBranch = new HashSet<>();
+        for (ItemRepo.SubtreeHeight height : queryByChunks(movedFolderIds, itemRepo::findSubtreeHeights)) {
+            rollUp.setHeight(nodeIndex.get(height.getId()), height.getHeight());
+        }
+
+        // Число предков вне пересчета в цепочке старого родителя каждого элемента запроса
+        int[] oldChainDepths = new int[itemsSize];
 
-            while (current.getParent() != null) {
-                current = current.getParent();
-                newParentsBranch.add(current);
+        // Родители еще не переназначены, поэтому цепочки старых родителей соответствуют базе
+        for (int i = 0; i < itemsSize; i++) {
+            Item current = oldParents[i];
+            int depth = 0;
+
+            while (current != null && !nodeIndex.containsKey(current.getId())) {
+                current = getStoredParent(current, storedItems);
+                depth++;
             }
 
-            updateParents(oldParent, item.getSize(), updateDate, newParentsBranch);
+            if (current != null) {
+                // Старый размер элемента входит в сохраненный размер первого пересчитываемого предка
+                rollUp.addSize(nodeIndex.get(current.getId()), -oldSizes[i]);
+            }
+
+            oldChainDepths[i] = depth;
         }
 
-        Map<String, Long> knownSizes = new HashMap<>(itemsSize);
-        Set<Item> sortedItems = new LinkedHashSet<>(itemsSize);
-        List<ItemUpdate> updates = new ArrayList<>(itemsSize);
+        int[] order = rollUp.rollUp();
+        metrics.stopPhase(phase, ItemMetrics.REGULAR, ItemMetrics.COMPUTE);
+        phase = metrics.startPhase();
+        Set<String> changedIds = new HashSet<>(nodeIndex.keySet());
+        // Предки старых родителей, обновленные запросом вместе с записью в историю
+        int updatedAncestors = 0;
+
+        for (int i = 0; i < itemsSize; i++) {
+            if (oldChainDepths[i] > 0) {
+                // Предки вне пересчета уменьшаются одним запросом
+                List<String> updatedIds = itemRepo.updateAncestors(
+                        oldParents[i].getId(), oldChainDepths[i], oldSizes[i], updateDate
+                );
+                changedIds.addAll(updatedIds);
+                updatedAncestors += updatedIds.size();
+            }
+        }
 
-        // Сортировка нужна, чтобы сохранить родителей вперед детей
-        for (Item item : mappedItems.values()) {
-            Long size;
-            Item current = item;
-            Deque<Item> childBranch = new LinkedList<>();
-
-            // Устанавливаем размер новым родителям
-            do {
-                current.setDate(updateDate);
-                size = getItemSize(current, knownSizes);
-                current.setSize(size);
-                childBranch.addFirst(current);
-                current = current.getParent();
-            } while (current != null);
-
-            sortedItems.addAll(childBranch);
+        for (Item item : batchItems) {
+            item.setParent(newParents.get(item.getId()));
         }
 
-        for (Item item : sortedItems) {
-            // Дети уже присутствуют среди элементов на сохранение
-            item.getChildren().clear();
+        // Родители сохраняются раньше детей
+        List<Item> sortedItems = new ArrayList<>(nodeCount);
+        List<ItemUpdate> updates = new ArrayList<>(nodeCount);
+
+        for (int i : order) {
+            Item item = nodes.get(i);
+            item.setDate(updateDate);
+            item.setSize(rollUp.getSize(i));
+            sortedItems.add(item);
             updates.add(new ItemUpdate(item));
         }
 
         itemRepo.saveAll(sortedItems);
         itemUpdateRepo.saveAll(updates);
+        // Запись выполняется при сбросе контекста, поэтому он сбрасывается до конца этапа
+        entityManager.flush();
+        metrics.stopPhase(phase, ItemMetrics.REGULAR, ItemMetrics.WRITE);
+
+        // Каждый сохраненный элемент получает строку истории
+        metrics.recordImport(ItemMetrics.REGULAR, itemsSize, nodeCount + updatedAncestors, nodeCount + updatedAncestors);
+        metrics.recordAncestors("import", nodeCount - itemsSize + updatedAncestors);
+        eventPublisher.publishEvent(new ItemsChangedEvent(changedIds));
     }
 
     /**
-     * Класс для связи элемента и его старого родителя.
+     * Сохраненный родитель элемента из предварительной выборки.
+     * @param item сохраненный элемент
+     * @param storedItems сохраненные элементы по идентификатору
+     * @return родитель или null для корневого элемента
      */
-    private static class ItemParentPair {
-        Item oldParent;
-        Item item;
+    private static Item getStoredParent(Item item, Map<String, Item> storedItems) {
+        return item.getParent() != null ? storedItems.get(item.getParent().getId()) : null;
+    }
+
+    /**
+     * Поиск нового родителя элемента среди элементов запроса и сохраненных элементов.
+     * @param item элемент запроса
+     * @param mappedItems элементы запроса по идентификатору
+     * @param storedItems сохраненные элементы по идентификатору
+     * @return новый родитель или null для корневого элемента
+     * @throws ValidationException родитель не найден или не является папкой
+     */
+    private static Item findNewParent(Item item, Map<String, Item> mappedItems, Map<String, Item> storedItems) {
+        String newParentId = item.getNewParentId();
+
+        if (newParentId == null) {
+            return null;
+        }
+
+        Item parent = mappedItems.get(newParentId);
 
-        public ItemParentPair(Item item) {
-            this.oldParent = item.getParent();
-            this.item = item;
+        if (parent == null) {
+            parent = storedItems.get(newParentId);
+
+            if (parent == null) {
+                throw new ValidationException("Родитель не найден");
+            }
         }
+
+        if (parent.getType() != ItemType.FOLDER) {
+            throw new ValidationException("Родителем может быть только папка");
+        }
+
+        return parent;
     }
 
     /**
-     * Удаление элемента.
-     * @param id идентификатор элемента
-     * @param updateDate дата обновления
+     * Проверка полей импортируемого элемента, не требующая обращения к базе.
+     * @param importItem импортируемый элемент
+     * @throws ValidationException ошибка валидации данных
      */
-    @Transactional
-    public void deleteItem(String id, Instant updateDate) {
-        Item item = findById(id);
-        itemRepo.delete(item);
-
-        if (item.getParent() != null) {
-            updateParents(item.getParent(), item.getSize(), updateDate, Collections.emptySet());
+    static void validateImport(ItemImport importItem) {
+        if (importItem.getType() == ItemType.FOLDER) {
+            if (importItem.getUrl() != null) {
+                throw new ValidationException("Поле url должно быть пустым у папки");
+            } else if (importItem.getSize() != null) {
+                throw new ValidationException("Поле size должно быть пустым у папки");
+            }
+        } else {
+            if (importItem.getUrl() == null) {
+                throw new ValidationException("Поле url не должно быть пустым у файла");
+            } else if (importItem.getSize() == null || !(importItem.getSize() > 0)) {
+                throw new ValidationException("Поле size должно быть больше 0 у файла");
+            }
         }
     }
 
     /**
-     * Поиск элемента.
-     * @param id идентификатор элемента
-     * @return найденный элемент
-     * @throws ItemNotFoundException запрашиваемый элемент не найден
+     * Предварительная выборка всех элементов, на которые ссылается запрос.
+     * Загружаются сами элементы, их новые родители и все предки найденных элементов по таблице замыкания,
+     * поэтому последующие обходы {@link Item#getParent()} не обращаются к базе.
+     * Вместо запроса на каждый элемент выполняется несколько запросов {@code WHERE item_id IN (...)}.
+     * Перед загрузкой все эти строки блокируются, поэтому прочитанные размеры не меняются до конца транзакции.
+     * @param importItems импортируемые элементы
+     * @return таблица найденных элементов по идентификатору
      */
-    private Item findById(String id) {
-        return itemRepo.findById(id).orElseThrow(ItemNotFoundException::new);
+    private Map<String, Item> prefetchItems(List<ItemImport> importItems) {
+        Set<String> ids = new HashSet<>(importItems.size() * 2);
+
+        for (ItemImport importItem : importItems) {
+            ids.add(importItem.getId());
+
+            if (importItem.getParentId() != null) {
+                ids.add(importItem.getParentId());
+            }
+        }
+
+        lockWithAncestors(ids);
+        Map<String, Item> storedItems = findAllByIds(ids, itemRepo::findAllByIdIn);
+        storedItems.putAll(findAllByIds(storedItems.keySet(), itemRepo::findAllAncestors));
+        return storedItems;
     }
 
     /**
-     * Обновление родителей при удалении одного элемента.
-     * Их размер уменьшается на размер этого элемента, и устанавливается дата обновления.
-     * @param rootParent первый родитель удаляемого элемента
-     * @param itemSize размер удаляемого элемента
-     * @param updateDate дата обновления
-     * @param newParentsBranch множество новых родителей элемента.
-     *                         Используется, чтобы не уменьшать их размер,
-     *                         который будет обновлен во внешнем методе
+     * Блокировка элементов и всех их предков до конца транзакции.
+     * Размеры папок пересчитываются от прочитанных значений, поэтому параллельные изменения с общими предками
+     * должны выполняться по очереди. Строки блокируются по возрастанию идентификатора, чтобы такие транзакции
+     * не блокировали друг друга взаимно. Предки перечитываются после блокировки, пока их множество не перестанет
+     * меняться: цепочку заблокированного элемента нельзя изменить, не дождавшись конца транзакции.
+     * Предки, найденные в следующих кругах, могут оказаться меньше уже заблокированных строк, если параллельный
+     * перенос изменил цепочку между чтением и блокировкой. Такое ожидание может замкнуть взаимную блокировку,
+     * база разрывает ее откатом одной из транзакций, и транзакция повторяется через {@link LockRetry}.
+     * Порядок {@link TreeSet} совпадает с {@code COLLATE "C"} в базе только для символов из BMP:
+     * суррогатные пары UTF-16 сравниваются иначе, чем байты UTF-8, поэтому идентификаторы с дополнительными
+     * символами могут блокироваться не по порядку и разрешаются тем же повтором.
+     * @param ids идентификаторы элементов, в том числе еще не созданных
      */
-    private void updateParents(
-            Item rootParent,
-            long itemSize,
-            Instant updateDate,
-            Set<Item> newParentsBranch
-    ) {
-        Item current = rootParent;
-        List<Item> parents = new ArrayList<>();
-        List<ItemUpdate> updates = new ArrayList<>();
-
-        do {
-            current.setDate(updateDate);
-            current.setSize(current.getSize() - itemSize);
-            parents.add(current);
-            updates.add(new ItemUpdate(current));
-            current = current.getParent();
-            // Пока не встретим первого родителя, который будет обновлен в другом методе
-        } while (current != null && !newParentsBranch.contains(current));
-
-        itemRepo.saveAll(parents);
-        itemUpdateRepo.saveAll(updates);
+    private void lockWithAncestors(Collection<String> ids) {
+        Set<String> locked = new HashSet<>(ids.size() * 2);
+        Set<String> pending = new TreeSet<>(ids);
+        pending.addAll(queryByChunks(ids, itemRepo::findAncestorIdsIn));
+
+        while (!pending.isEmpty()) {
+            queryByChunks(pending, itemRepo::lockAllByIdIn);
+            locked.addAll(pending);
+            pending = new TreeSet<>(queryByChunks(locked, itemRepo::findAncestorIdsIn));
+            pending.removeAll(locked);
+        }
     }
 
     /**
-     * Рекурсивное вычисление размера элемента.
-     * Используется кэширование с помощью таблицы.
-     * @param item элемент, размер которого требуется установить
-     * @param knownSizes таблица с известными размерами, которая заполняется по мере выполнения метода
-     * @return размер элемента
+     * Поиск элементов по множеству идентификаторов через {@link #queryByChunks}.
+     * @param ids идентификаторы элементов
+     * @param query запрос для одной порции идентификаторов
+     * @return таблица найденных элементов по идентификатору
      */
-    private Long getItemSize(Item item, Map<String, Long> knownSizes) {
-        Long size;
+    private Map<String, Item> findAllByIds(Collection<String> ids, Function<List<String>, List<Item>> query) {
+        Map<String, Item> found = new HashMap<>(ids.size());
 
-        if (item.getType() == ItemType.FILE) {
-            size = item.getSize();
-        } else {
-            size = knownSizes.get(item.getId());
+        for (Item item : queryByChunks(ids, query)) {
+            found.put(item.getId(), item);
+        }
 
-            if (size == null) {
-                size = 0L;
-                Set<Item> children = item.getChildren();
+        return found;
+    }
 
-                for (Item child : children) {
-                    Long currentSize = getItemSize(child, knownSizes);
-                    size += currentSize;
-                }
+    /**
+     * Выполнение запроса по множеству идентификаторов порциями по {@link #PREFETCH_CHUNK_SIZE}.
+     * @param ids идентификаторы
+     * @param query запрос для одной порции идентификаторов
+     * @return результаты всех порций
+     */
+    private static <T> List<T> queryByChunks(Collection<String> ids, Function<List<String>, List<T>> query) {
+        List<T> found = new ArrayList<>(ids.size());
+        List<String> idList = new ArrayList<>(ids);
 
-                knownSizes.put(item.getId(), size);
-            }
+        for (int from = 0; from < idList.size(); from += PREFETCH_CHUNK_SIZE) {
+            found.addAll(query.apply(idList.subList(from, Math.min(from + PREFETCH_CHUNK_SIZE, idList.size()))));
         }
 
-        return size;
+        return found;
     }
 
     /**
-     * Получение единственного элемента.
+     * Удаление элемента.
      * @param id идентификатор элемента
-     * @return объект с информацией об элементе
+     * @param updateDate дата обновления
      */
     @Transactional
-    public ItemResponse getNode(String id) {
-        Item rootItem = findById(id);
-        ItemResponse response = new ItemResponse(rootItem);
-        setChildren(response, rootItem.getChildren());
-        return response;
+    public void deleteItem(String id, Instant updateDate) {
+        Set<String> changedIds = new HashSet<>(itemRepo.findDescendantIds(id));
+        changedIds.add(id);
+        // Потомки удаляются каскадом, поэтому блокируются вместе с предками
+        lockWithAncestors(changedIds);
+        Item item = findById(id);
+
+        if (item.getParent() != null) {
+            // Вся цепочка предков обновляется и попадает в историю одним запросом
+            List<String> updatedIds = itemRepo.updateAncestors(
+                    item.getParent().getId(), Integer.MAX_VALUE, item.getSize(), updateDate
+            );
+            changedIds.addAll(updatedIds);
+            metrics.recordAncestors("delete", updatedIds.size());
+        } else {
+            metrics.recordAncestors("delete", 0);
+        }
+
+        itemRepo.delete(item);
+        eventPublisher.publishEvent(new ItemsChangedEvent(changedIds));
+    }
+
+    /**
+     * Поиск элемента.
+     * @param id идентификатор элемента
+     * @return найденный элемент
+     * @throws ItemNotFoundException запрашиваемый элемент не найден
+     */
+    private Item findById(String id) {
+        return itemRepo.findById(id).orElseThrow(ItemNotFoundException::new);
     }
 
     /**
-     * Рекурсивное заполнение узла дочерними элементами.
-     * @param response текущий элемент
-     * @param itemChildren дети текущего элемента
+     * Получение единственного элемента.
+     * Поддерево загружается одним запросом и собирается в дерево через таблицу папок по идентификатору.
+     * @param id идентификатор элемента
+     * @return объект с информацией об элементе
+     * @throws ItemNotFoundException запрашиваемый элемент не найден
      */
-    private void setChildren(ItemResponse response, Set<Item> itemChildren) {
-        List<ItemResponse> responseChildren = null;
+    @Transactional(readOnly = true)
+    public ItemResponse getNode(String id) {
+        List<Item> subtree = itemRepo.findSubtree(id);
 
-        if (response.getType() == ItemType.FOLDER) {
-            responseChildren = new ArrayList<>();
-            ItemResponse currentResponse;
+        if (subtree.isEmpty()) {
+            throw new ItemNotFoundException();
+        }
 
-            if (itemChildren != null) {
-                for (Item item : itemChildren) {
-                    currentResponse = new ItemResponse(item);
+        metrics.recordSubtree(subtree.size());
 
-                    if (item.getType() == ItemType.FILE) {
-                        currentResponse.setChildren(null);
-                    } else {
-                        setChildren(currentResponse, item.getChildren());
-                    }
+        Map<String, ItemResponse> folders = new HashMap<>();
+        ItemResponse rootResponse = null;
 
-                    responseChildren.add(currentResponse);
-                }
+        // Родитель всегда идет раньше своих детей
+        for (Item item : subtree) {
+            ItemResponse response = new ItemResponse(item);
+
+            if (item.getType() == ItemType.FOLDER) {
+                response.setChildren(new ArrayList<>());
+                folders.put(item.getId(), response);
+            }
+
+            if (rootResponse == null) {
+                rootResponse = response;
+            } else {
+                folders.get(response.getParentId()).getChildren().add(response);
             }
         }
 
-        response.setChildren(responseChildren);
+        return rootResponse;
     }
 
     /**
      * Получение всех файлов, обновленных за последние 24 часа от времени запроса.
+     * Недавний интервал берется из окна {@link RecentFiles}, более ранний - из базы.
      * @param dateTo конец интервала
      * @return объект с найденными файлами
      */
-    @Transactional
+    @Transactional(readOnly = true)
     public ItemHistoryResponse getLastUpdatedFiles(Instant dateTo) {
         Instant dateFrom = dateTo.minus(24, ChronoUnit.HOURS);
-        List<Item> items = itemRepo.findAllByDateBetweenAndType(dateFrom, dateTo, ItemType.FILE);
-        List<ItemHistoryUnit> units = items.stream().map(ItemHistoryUnit::new).toList();
+        List<ItemHistoryUnit> units = recentFiles.find(dateFrom, dateTo)
+                .orElseGet(() -> itemRepo.findFilesUpdatedBetween(dateFrom, dateTo));
 
         return new ItemHistoryResponse(units);
     }
 
     /**
-     * Получение истории обновлений элемента за заданный полуинтервал [dateStart, dateEnd).
+     * Получение страницы истории обновлений элемента за заданный полуинтервал [dateStart, dateEnd).
+     * Обновления упорядочены по дате. Следующая страница запрашивается по курсору из ответа.
      * @param id идентификатор элемента
      * @param dateStart начало интервала для поиска
      * @param dateEnd конец интервала для поиска
-     * @return объект с найденными обновлениями
+     * @param cursor курсор из предыдущего ответа или null для первой страницы
+     * @param limit размер страницы или null для размера по умолчанию
+     * @return объект с найденными обновлениями и курсором следующей страницы
+     * @throws ValidationException некорректный курсор или размер страницы
      */
-    @Transactional
-    public ItemHistoryResponse getNodeHistory(String id, Instant dateStart, Instant dateEnd) {
-        Item item = findById(id);
-        List<ItemUpdate> updates;
-
-        if (dateStart == null && dateEnd == null) {
-            updates = itemUpdateRepo.findAllByItem(item);
-        } else if (dateStart != null && dateEnd != null) {
-            updates = itemUpdateRepo.findAllByItemAndDateInterval(item, dateStart, dateEnd);
-        } else if (dateStart != null) {
-            updates = itemUpdateRepo.findAllByItemAndDateFrom(item, dateStart);
-        } else {
-            updates = itemUpdateRepo.findAllByItemAndDateTo(item, dateEnd);
+    @Transactional(readOnly = true)
+    public ItemHistoryResponse getNodeHistory(
+            String id,
+            Instant dateStart,
+            Instant dateEnd,
+            String cursor,
+            Integer limit
+    ) {
+        if (!itemRepo.existsById(id)) {
+            throw new ItemNotFoundException();
         }
 
-        List<ItemHistoryUnit> units = updates.stream().map(ItemHistoryUnit::new).toList();
+        int pageSize = limit != null ? limit : historyPageSize;
 
-        return new ItemHistoryResponse(units);
+        if (pageSize < 1 || pageSize > historyPageSize) {
+            throw new ValidationException("Размер страницы должен быть от 1 до " + historyPageSize);
+        }
+
+        Instant from = dateStart != null ? dateStart : MIN_HISTORY_DATE;
+        Instant to = dateEnd != null ? dateEnd : MAX_HISTORY_DATE;
+        Instant afterDate = from;
+        long afterId = Long.MIN_VALUE;
+
+        if (cursor != null) {
+            HistoryCursor position = HistoryCursor.decode(cursor);
+            // Нижняя граница по курсору отсекает секции до него
+            from = afterDate = position.date();
+            afterId = position.updateId();
+        }
+
+        // Лишняя строка показывает, есть ли следующая страница
+        List<ItemHistoryUnit> units = itemUpdateRepo.findPage(
+                id, from, to, afterDate, afterId, PageRequest.of(0, pageSize + 1)
+        );
+        String next = null;
+
+        if (units.size() > pageSize) {
+            units = units.subList(0, pageSize);
+            ItemHistoryUnit last = units.get(pageSize - 1);
+            next = new HistoryCursor(last.getDate(), last.getUpdateId()).encode();
+        }
+
+        return new ItemHistoryResponse(units, next);
+    }
+
+    /**
+     * Позиция последнего отданного обновления.
+     * Передается клиенту в виде непрозрачной строки.
+     */
+    private record HistoryCursor(Instant date, long updateId) {
+        String encode() {
+            String value = date + "," + updateId;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static HistoryCursor decode(String cursor) {
+            try {
+                String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = value.indexOf(',');
+                return new HistoryCursor(
+                        Instant.parse(value.substring(0, separator)),
+                        Long.parseLong(value.substring(separator + 1))
+                );
+            } catch (IllegalArgumentException | DateTimeParseException | IndexOutOfBoundsException e) {
+                throw new ValidationException("Некорректный курсор");
+            }
+        }
     }
 }
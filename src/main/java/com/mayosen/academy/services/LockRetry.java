@@ -0,0 +1,38 @@
+package com.mayosen.academy.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+/**
+ * Повтор транзакции, проигравшей взаимную блокировку или нарушившей порядок блокировки строк.
+ * Откат освобождает все удерживаемые строки, поэтому повтор заново блокирует их по порядку.
+ * Вызывается вне транзакции: внутри общей транзакции откат затронул бы и остальные изменения.
+ */
+@Slf4j
+@Component
+public class LockRetry {
+    private final int attempts;
+
+    @Autowired
+    public LockRetry(@Value("${academy.imports.lock-attempts:3}") int attempts) {
+        this.attempts = Math.max(1, attempts);
+    }
+
+    public void run(Runnable transaction) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                transaction.run();
+                return;
+            } catch (PessimisticLockingFailureException e) {
+                if (attempt >= attempts) {
+                    throw e;
+                }
+
+                log.debug("Retrying transaction after lock failure, attempt {}", attempt, e);
+            }
+        }
+    }
+}
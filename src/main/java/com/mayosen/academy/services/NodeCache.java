@@ -0,0 +1,189 @@
+package com.mayosen.academy.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mayosen.academy.events.ItemsChangedEvent;
+import com.mayosen.academy.exceptions.ItemNotFoundException;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Кэш сериализованных ответов GET /nodes/{id}.
+ * Размер ограничен суммарным объемом хранимых ответов, ответы больше {@code max-entry-size} не кэшируются.
+ * Записи удаляются после фиксации транзакций, изменивших элемент или любого из его потомков.
+ */
+@Component
+public class NodeCache {
+    private final NodeStreamService nodeStreamService;
+    private final boolean enabled;
+    private final int maxEntrySize;
+    private final Cache<String, CachedNode> cache;
+    /**
+     * Счетчик удалений. Ответ, при построении которого произошло удаление, мог прочитать
+     * состояние до изменения, поэтому в кэше не остается.
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    @Autowired
+    public NodeCache(
+            NodeStreamService nodeStreamService,
+            @Value("${academy.nodes.cache.enabled:true}") boolean enabled,
+            @Value("${academy.nodes.cache.max-size:64MB}") DataSize maxSize,
+            @Value("${academy.nodes.cache.max-entry-size:1MB}") DataSize maxEntrySize
+    ) {
+        this.nodeStreamService = nodeStreamService;
+        this.enabled = enabled;
+        this.maxEntrySize = (int) Math.min(maxEntrySize.toBytes(), Integer.MAX_VALUE - 8);
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .weigher((String id, CachedNode node) -> node.payload.length)
+                .build();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param id идентификатор элемента
+     * @return закэшированный ответ или {@code null}
+     */
+    public CachedNode getIfPresent(String id) {
+        return cache.getIfPresent(id);
+    }
+
+    /**
+     * Получение сериализованного элемента со всеми потомками.
+     * При промахе ответ строится из базы в память и кэшируется, если не превышает {@code max-entry-size}.
+     * @param id идентификатор элемента
+     * @return ответ в формате JSON вместе с его ETag
+     * @throws ItemNotFoundException запрашиваемый элемент не найден
+     */
+    public CachedNode get(String id) throws IOException {
+        CachedNode node = cache.getIfPresent(id);
+
+        if (node != null) {
+            return node;
+        }
+
+        long version = invalidations.get();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Instant latestDate = nodeStreamService.writeNode(id, out);
+        node = toCachedNode(out.toByteArray(), latestDate);
+
+        if (node.payload.length <= maxEntrySize) {
+            put(id, node, version);
+        }
+
+        return node;
+    }
+
+    /**
+     * Запись элемента в поток при промахе кэша.
+     * Ответ пишется в поток по мере чтения из базы и параллельно копируется в буфер.
+     * Как только ответ превышает {@code max-entry-size}, буфер отбрасывается и ответ не кэшируется.
+     * @param id идентификатор элемента
+     * @param out выходной поток
+     * @throws ItemNotFoundException запрашиваемый элемент не найден
+     */
+    public void write(String id, OutputStream out) throws IOException {
+        long version = invalidations.get();
+        CopyingOutputStream copying = new CopyingOutputStream(out, maxEntrySize);
+        Instant latestDate = nodeStreamService.writeNode(id, copying);
+
+        if (copying.copy != null) {
+            put(id, toCachedNode(copying.copy.toByteArray(), latestDate), version);
+        }
+    }
+
+    private static CachedNode toCachedNode(byte[] payload, Instant latestDate) {
+        // Даты недостаточно: два обновления с одинаковой датой дали бы одинаковый ETag
+        String etag = String.format("\"%d-%s\"", latestDate.toEpochMilli(), DigestUtils.md5DigestAsHex(payload));
+        return new CachedNode(payload, etag);
+    }
+
+    /**
+     * Вставка ответа, если с начала его построения не было удалений.
+     * Удаление после вставки убирает и эту запись, а удаление между проверкой и вставкой
+     * обнаруживается повторной проверкой.
+     */
+    private void put(String id, CachedNode node, long version) {
+        if (invalidations.get() != version) {
+            return;
+        }
+
+        cache.put(id, node);
+
+        if (invalidations.get() != version) {
+            cache.invalidate(id);
+        }
+    }
+
+    @TransactionalEventListener
+    public void onItemsChanged(ItemsChangedEvent event) {
+        invalidations.incrementAndGet();
+        cache.invalidateAll(event.getItemIds());
+    }
+
+    public void clear() {
+        invalidations.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    /**
+     * Сериализованный ответ и его строгий ETag.
+     * ETag строится из самой поздней даты обновления в поддереве и хэша ответа.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class CachedNode {
+        private final byte[] payload;
+        private final String etag;
+    }
+
+    /**
+     * Поток, копирующий записанное в буфер до достижения предела.
+     */
+    private static class CopyingOutputStream extends FilterOutputStream {
+        private final int limit;
+        private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+        CopyingOutputStream(OutputStream out, int limit) {
+            super(out);
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            copy(1).write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            copy(len).write(b, off, len);
+        }
+
+        private OutputStream copy(int len) {
+            if (copy != null && copy.size() + len > limit) {
+                copy = null;
+            }
+
+            return copy != null ? copy : OutputStream.nullOutputStream();
+        }
+    }
+}
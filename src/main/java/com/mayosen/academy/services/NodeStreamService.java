@@ -0,0 +1,162 @@
+package com.mayosen.academy.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mayosen.academy.domain.ItemType;
+import com.mayosen.academy.exceptions.ItemNotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Потоковая запись элемента со всеми потомками в JSON.
+ * Поддерево читается курсором в порядке обхода в глубину и сразу пишется в выходной поток,
+ * поэтому расход памяти ограничен глубиной дерева, а не количеством элементов.
+ */
+@Service
+public class NodeStreamService {
+    /**
+     * Потомки упорядочены по пути от корня, поэтому каждая папка идет сразу перед своим содержимым.
+     */
+    private static final String SUBTREE_QUERY = """
+            WITH RECURSIVE tree AS (
+                SELECT item_id, url, type, parent_id, date, size, CAST(ARRAY[item_id] AS varchar[]) AS path
+                FROM system_item WHERE item_id = ?
+                UNION ALL
+                SELECT i.item_id, i.url, i.type, i.parent_id, i.date, i.size, tree.path || CAST(i.item_id AS varchar)
+                FROM system_item i JOIN tree ON i.parent_id = tree.item_id
+            )
+            SELECT item_id, url, type, parent_id, date, size FROM tree ORDER BY path""";
+
+    private static final int FETCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final ItemMetrics metrics;
+
+    @Autowired
+    public NodeStreamService(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper, ItemMetrics metrics) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Запись элемента в формате {@link com.mayosen.academy.responses.items.ItemResponse}.
+     * Курсор PostgreSQL работает только внутри транзакции.
+     * @param id идентификатор элемента
+     * @param out выходной поток. В него ничего не пишется, если элемент не найден
+     * @return самая поздняя дата обновления среди элемента и его потомков
+     * @throws ItemNotFoundException запрашиваемый элемент не найден
+     */
+    @Transactional(readOnly = true)
+    public Instant writeNode(String id, OutputStream out) throws IOException {
+        TreeWriter writer = new TreeWriter(out);
+
+        try {
+            jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(SUBTREE_QUERY);
+                statement.setFetchSize(FETCH_SIZE);
+                statement.setString(1, id);
+                return statement;
+            }, writer::writeRow);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        if (writer.generator == null) {
+            throw new ItemNotFoundException();
+        }
+
+        writer.finish();
+        metrics.recordSubtree(writer.rows);
+        return writer.latestDate;
+    }
+
+    /**
+     * Запись строк поддерева с учетом вложенности.
+     * Стек хранит идентификаторы папок, у которых открыт массив children.
+     */
+    private class TreeWriter {
+        private final OutputStream out;
+        private final Deque<String> openFolders = new ArrayDeque<>();
+        private JsonGenerator generator;
+        private Instant latestDate;
+        private int rows;
+
+        TreeWriter(OutputStream out) {
+            this.out = out;
+        }
+
+        void writeRow(ResultSet rs) throws SQLException {
+            try {
+                if (generator == null) {
+                    generator = objectMapper.getFactory().createGenerator(out);
+                    generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                }
+
+                rows++;
+                String parentId = rs.getString("parent_id");
+
+                // Закрываем папки, содержимое которых закончилось
+                while (!openFolders.isEmpty() && !openFolders.peek().equals(parentId)) {
+                    closeFolder();
+                }
+
+                String id = rs.getString("item_id");
+                ItemType type = ItemType.valueOf(rs.getString("type"));
+                Instant date = rs.getObject("date", OffsetDateTime.class).toInstant();
+                long size = rs.getLong("size");
+                Long sizeValue = rs.wasNull() ? null : size;
+
+                if (latestDate == null || date.isAfter(latestDate)) {
+                    latestDate = date;
+                }
+
+                generator.writeStartObject();
+                generator.writeStringField("id", id);
+                generator.writeStringField("url", rs.getString("url"));
+                generator.writeObjectField("type", type);
+                generator.writeStringField("parentId", parentId);
+                generator.writeObjectField("date", date);
+                generator.writeObjectField("size", sizeValue);
+
+                if (type == ItemType.FOLDER) {
+                    generator.writeArrayFieldStart("children");
+                    openFolders.push(id);
+                } else {
+                    generator.writeNullField("children");
+                    generator.writeEndObject();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void finish() throws IOException {
+            while (!openFolders.isEmpty()) {
+                closeFolder();
+            }
+
+            generator.flush();
+        }
+
+        private void closeFolder() throws IOException {
+            openFolders.pop();
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.mayosen.academy.services;
+
+import com.mayosen.academy.events.ItemsChangedEvent;
+import com.mayosen.academy.repos.ItemRepo;
+import com.mayosen.academy.responses.updates.ItemHistoryUnit;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Упорядоченное по дате окно недавно обновленных файлов для GET /updates.
+ * Хранит все файлы с датой не раньше {@link #completeFrom}, поэтому запрос, интервал которого
+ * начинается не раньше этой границы, отвечается из памяти. Остальные запросы идут в базу.
+ * Окно обновляется после фиксации транзакций, изменивших элементы.
+ */
+@Component
+public class RecentFiles {
+    private static final int REFRESH_CHUNK_SIZE = 1000;
+
+    private final ItemRepo itemRepo;
+    private final boolean enabled;
+    private final Duration retention;
+    private final int maxSize;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    /**
+     * Чтение из базы и применение изменений выполняются под этой блокировкой,
+     * чтобы более старое состояние не перезаписало более новое.
+     */
+    private final Lock refreshLock = new ReentrantLock();
+
+    private final NavigableMap<Instant, Map<String, ItemHistoryUnit>> filesByDate = new TreeMap<>();
+    private final Map<String, Instant> fileDates = new HashMap<>();
+    /**
+     * Граница полноты окна. До первой загрузки окно не используется.
+     */
+    private Instant completeFrom = Instant.MAX;
+    private Instant latestDate = Instant.MIN;
+
+    @Autowired
+    public RecentFiles(
+            ItemRepo itemRepo,
+            @Value("${academy.updates.recent.enabled:true}") boolean enabled,
+            @Value("${academy.updates.recent.retention:48h}") Duration retention,
+            @Value("${academy.updates.recent.max-size:100000}") int maxSize
+    ) {
+        this.itemRepo = itemRepo;
+        this.enabled = enabled;
+        this.retention = retention;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Поиск файлов, обновленных за интервал [dateStart, dateEnd].
+     * @param dateStart начало интервала
+     * @param dateEnd конец интервала
+     * @return найденные файлы или пустое значение, если окно не покрывает интервал
+     */
+    public Optional<List<ItemHistoryUnit>> find(Instant dateStart, Instant dateEnd) {
+        if (!enabled || dateStart.isAfter(dateEnd)) {
+            return Optional.empty();
+        }
+
+        lock.readLock().lock();
+
+        try {
+            if (dateStart.isBefore(completeFrom)) {
+                return Optional.empty();
+            }
+
+            List<ItemHistoryUnit> files = new ArrayList<>();
+
+            for (Map<String, ItemHistoryUnit> bucket : filesByDate.subMap(dateStart, true, dateEnd, true).values()) {
+                files.addAll(bucket.values());
+            }
+
+            return Optional.of(files);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Загрузка окна из базы: файлы за {@code retention} до последнего обновления файла.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void reload() {
+        if (!enabled) {
+            return;
+        }
+
+        refreshLock.lock();
+
+        try {
+            Instant latest = itemRepo.findLatestFileDate();
+            Instant from = latest != null ? latest.minus(retention) : Instant.MIN;
+            List<ItemHistoryUnit> files = latest != null ? itemRepo.findFilesUpdatedSince(from) : List.of();
+
+            lock.writeLock().lock();
+
+            try {
+                filesByDate.clear();
+                fileDates.clear();
+                completeFrom = from;
+                latestDate = latest != null ? latest : Instant.MIN;
+                files.forEach(this::put);
+                evictOverflow();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * Перечитывание измененных элементов после фиксации транзакции.
+     * Элементы, которых больше нет среди файлов, удаляются из окна.
+     */
+    @TransactionalEventListener
+    public void onItemsChanged(ItemsChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+
+        refreshLock.lock();
+
+        try {
+            List<String> ids = new ArrayList<>(event.getItemIds());
+            List<ItemHistoryUnit> files = new ArrayList<>();
+
+            for (int from = 0; from < ids.size(); from += REFRESH_CHUNK_SIZE) {
+                List<String> chunk = ids.subList(from, Math.min(from + REFRESH_CHUNK_SIZE, ids.size()));
+                files.addAll(itemRepo.findFilesByIdIn(chunk));
+            }
+
+            lock.writeLock().lock();
+
+            try {
+                ids.forEach(this::remove);
+
+                for (ItemHistoryUnit file : files) {
+                    if (file.getDate().isAfter(latestDate)) {
+                        latestDate = file.getDate();
+                    }
+
+                    if (!file.getDate().isBefore(completeFrom)) {
+                        put(file);
+                    }
+                }
+
+                evictExpired();
+                evictOverflow();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    private void put(ItemHistoryUnit file) {
+        filesByDate.computeIfAbsent(file.getDate(), date -> new LinkedHashMap<>()).put(file.getId(), file);
+        fileDates.put(file.getId(), file.getDate());
+    }
+
+    private void remove(String id) {
+        Instant date = fileDates.remove(id);
+
+        if (date != null) {
+            Map<String, ItemHistoryUnit> bucket = filesByDate.get(date);
+            bucket.remove(id);
+
+            if (bucket.isEmpty()) {
+                filesByDate.remove(date);
+            }
+        }
+    }
+
+    /**
+     * Сдвиг границы полноты вслед за последним обновлением.
+     */
+    private void evictExpired() {
+        if (latestDate.equals(Instant.MIN)) {
+            return;
+        }
+
+        Instant from = latestDate.minus(retention);
+
+        if (from.isAfter(completeFrom)) {
+            evictBefore(from);
+            completeFrom = from;
+        }
+    }
+
+    /**
+     * Вытеснение самых старых дат при превышении размера. Граница полноты сдвигается за вытесненную дату.
+     */
+    private void evictOverflow() {
+        while (fileDates.size() > maxSize) {
+            Instant oldest = filesByDate.firstKey();
+            evictBefore(oldest.plusNanos(1));
+            completeFrom = oldest.plusNanos(1);
+        }
+    }
+
+    private void evictBefore(Instant date) {
+        Map<Instant, Map<String, ItemHistoryUnit>> expired = filesByDate.headMap(date, false);
+
+        for (Map<String, ItemHistoryUnit> bucket : expired.values()) {
+            bucket.keySet().forEach(fileDates::remove);
+        }
+
+        expired.clear();
+    }
+}
@@ -0,0 +1,121 @@
+package com.mayosen.academy.services;
+
+import javax.validation.ValidationException;
+import java.util.Arrays;
+
+/**
+ * Пересчет размеров папок в рамках одного импорта.
+ * Узлы задаются индексами, связи с родителями и размеры хранятся в массивах примитивов.
+ * Собственный размер узла задается заранее: у файла это его размер, у папки - размер детей,
+ * которые не участвуют в пересчете. Обход идет от листьев к корням без рекурсии,
+ * поэтому глубина дерева не ограничена стеком.
+ * Тот же обход проверяет отсутствие циклов и глубину вложенности за линейное время.
+ */
+class SizeRollUp {
+    static final int NO_PARENT = -1;
+
+    private final int[] parents;
+    private final long[] sizes;
+    private final int[] heights;
+    private final int maxDepth;
+
+    /**
+     * @param nodeCount количество узлов
+     * @param maxDepth наибольшая допустимая глубина элемента, у корня глубина 0
+     */
+    SizeRollUp(int nodeCount, int maxDepth) {
+        parents = new int[nodeCount];
+        sizes = new long[nodeCount];
+        heights = new int[nodeCount];
+        this.maxDepth = maxDepth;
+        Arrays.fill(parents, NO_PARENT);
+    }
+
+    void setParent(int node, int parent) {
+        parents[node] = parent;
+    }
+
+    void addSize(int node, long size) {
+        sizes[node] += size;
+    }
+
+    /**
+     * Высота сохраненного поддерева узла, которое переносится вместе с ним.
+     */
+    void setHeight(int node, int height) {
+        heights[node] = height;
+    }
+
+    long getSize(int node) {
+        return sizes[node];
+    }
+
+    /**
+     * Добавление размеров детей к родителям.
+     * Узел обрабатывается после всех своих детей, то есть в обратном порядке обхода дерева.
+     * Затем от корней к листьям вычисляется глубина узлов.
+     * @return индексы узлов в порядке от корней к листьям
+     * @throws ValidationException узлы образуют цикл или превышена глубина вложенности
+     */
+    int[] rollUp() {
+        int nodeCount = parents.length;
+        // Количество детей, размер которых еще не добавлен к узлу
+        int[] pending = new int[nodeCount];
+
+        for (int parent : parents) {
+            if (parent != NO_PARENT) {
+                pending[parent]++;
+            }
+        }
+
+        int[] order = new int[nodeCount];
+        int tail = 0;
+
+        for (int node = 0; node < nodeCount; node++) {
+            if (pending[node] == 0) {
+                order[tail++] = node;
+            }
+        }
+
+        for (int head = 0; head < tail; head++) {
+            int node = order[head];
+            int parent = parents[node];
+
+            if (parent != NO_PARENT) {
+                sizes[parent] += sizes[node];
+
+                if (--pending[parent] == 0) {
+                    order[tail++] = parent;
+                }
+            }
+        }
+
+        // Узлы цикла никогда не освобождаются от ожидания детей
+        if (tail < nodeCount) {
+            throw new ValidationException("Элементы образуют цикл");
+        }
+
+        for (int i = 0, j = nodeCount - 1; i < j; i++, j--) {
+            int node = order[i];
+            order[i] = order[j];
+            order[j] = node;
+        }
+
+        // Верхние узлы всегда корни, так как цепочки предков собираются до корня
+        int[] depths = new int[nodeCount];
+
+        for (int node : order) {
+            int parent = parents[node];
+
+            if (parent != NO_PARENT) {
+                depths[node] = depths[parent] + 1;
+            }
+
+            if (depths[node] + heights[node] > maxDepth) {
+                throw new ValidationException("Превышена глубина вложенности " + maxDepth);
+            }
+        }
+
+        return order;
+    }
+}
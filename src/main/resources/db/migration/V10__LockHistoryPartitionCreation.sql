@@ -0,0 +1,41 @@
+-- Функцию могут одновременно вызвать несколько экземпляров приложения при запуске.
+-- Рекомендательная блокировка до конца транзакции упорядочивает вызовы, поэтому проверка
+-- to_regclass и создание секции не гонятся между собой. Блокировка секции по умолчанию
+-- не дает вставить в нее строку нового месяца между переносом строк и ATTACH PARTITION
+CREATE OR REPLACE FUNCTION create_update_history_partitions(from_date timestamptz, to_date timestamptz) RETURNS int AS $$
+DECLARE
+    month_start timestamp := date_trunc('month', from_date AT TIME ZONE 'UTC');
+    last_month timestamp := date_trunc('month', to_date AT TIME ZONE 'UTC');
+    lower_bound timestamptz;
+    upper_bound timestamptz;
+    partition_name text;
+    created int := 0;
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('create_update_history_partitions'));
+
+    WHILE month_start <= last_month LOOP
+        lower_bound := month_start AT TIME ZONE 'UTC';
+        upper_bound := (month_start + interval '1 month') AT TIME ZONE 'UTC';
+        partition_name := 'update_history_' || to_char(month_start, 'YYYY_MM');
+
+        IF to_regclass(partition_name) IS NULL THEN
+            LOCK TABLE update_history_default IN EXCLUSIVE MODE;
+            EXECUTE format('CREATE TABLE %I (LIKE update_history INCLUDING DEFAULTS)', partition_name);
+            EXECUTE format(
+                'WITH moved AS (DELETE FROM update_history_default WHERE date >= %L AND date < %L RETURNING *) '
+                'INSERT INTO %I SELECT * FROM moved',
+                lower_bound, upper_bound, partition_name
+            );
+            EXECUTE format(
+                'ALTER TABLE update_history ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+                partition_name, lower_bound, upper_bound
+            );
+            created := created + 1;
+        END IF;
+
+        month_start := month_start + interval '1 month';
+    END LOOP;
+
+    RETURN created;
+END;
+$$ LANGUAGE plpgsql;
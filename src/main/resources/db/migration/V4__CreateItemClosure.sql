@@ -0,0 +1,75 @@
+DROP TRIGGER IF EXISTS item_closure_insert_trigger ON system_item;
+DROP TRIGGER IF EXISTS item_closure_update_trigger ON system_item;
+DROP FUNCTION IF EXISTS item_closure_on_insert();
+DROP FUNCTION IF EXISTS item_closure_on_update();
+DROP TABLE IF EXISTS item_closure;
+
+-- Таблица замыкания: по строке на каждую пару (предок, потомок), включая сам элемент с depth = 0
+CREATE TABLE item_closure(
+    ancestor_id VARCHAR(255) NOT NULL,
+    descendant_id VARCHAR(255) NOT NULL,
+    depth int NOT NULL,
+    PRIMARY KEY (ancestor_id, descendant_id)
+);
+
+ALTER TABLE item_closure ADD CONSTRAINT closure_ancestor_id_fk
+    FOREIGN KEY (ancestor_id) REFERENCES system_item(item_id) ON DELETE CASCADE;
+ALTER TABLE item_closure ADD CONSTRAINT closure_descendant_id_fk
+    FOREIGN KEY (descendant_id) REFERENCES system_item(item_id) ON DELETE CASCADE;
+
+CREATE INDEX item_closure_descendant_index ON item_closure(descendant_id, depth);
+
+INSERT INTO item_closure(ancestor_id, descendant_id, depth)
+WITH RECURSIVE chain(ancestor_id, descendant_id, depth) AS (
+    SELECT item_id, item_id, 0 FROM system_item
+    UNION ALL
+    SELECT i.parent_id, chain.descendant_id, chain.depth + 1
+    FROM chain JOIN system_item i ON i.item_id = chain.ancestor_id
+    WHERE i.parent_id IS NOT NULL
+)
+SELECT ancestor_id, descendant_id, depth FROM chain;
+
+-- Новый элемент наследует всех предков своего родителя
+CREATE FUNCTION item_closure_on_insert() RETURNS trigger AS $$
+BEGIN
+    INSERT INTO item_closure(ancestor_id, descendant_id, depth)
+    SELECT NEW.item_id, NEW.item_id, 0
+    UNION ALL
+    SELECT ancestor_id, NEW.item_id, depth + 1 FROM item_closure WHERE descendant_id = NEW.parent_id;
+
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- При переносе элемента его поддерево отвязывается от старых предков и привязывается к новым
+CREATE FUNCTION item_closure_on_update() RETURNS trigger AS $$
+BEGIN
+    IF NEW.parent_id IS NOT NULL AND EXISTS(
+        SELECT 1 FROM item_closure WHERE ancestor_id = NEW.item_id AND descendant_id = NEW.parent_id
+    ) THEN
+        RAISE EXCEPTION 'Item % cannot be moved into its own subtree', NEW.item_id
+            USING ERRCODE = 'integrity_constraint_violation';
+    END IF;
+
+    DELETE FROM item_closure c
+    USING item_closure subtree, item_closure ancestors
+    WHERE subtree.ancestor_id = NEW.item_id
+      AND ancestors.descendant_id = NEW.item_id
+      AND ancestors.depth > 0
+      AND c.ancestor_id = ancestors.ancestor_id
+      AND c.descendant_id = subtree.descendant_id;
+
+    INSERT INTO item_closure(ancestor_id, descendant_id, depth)
+    SELECT ancestors.ancestor_id, subtree.descendant_id, ancestors.depth + subtree.depth + 1
+    FROM item_closure ancestors, item_closure subtree
+    WHERE ancestors.descendant_id = NEW.parent_id AND subtree.ancestor_id = NEW.item_id;
+
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER item_closure_insert_trigger AFTER INSERT ON system_item
+    FOR EACH ROW EXECUTE FUNCTION item_closure_on_insert();
+
+CREATE TRIGGER item_closure_update_trigger AFTER UPDATE OF parent_id ON system_item
+    FOR EACH ROW WHEN (OLD.parent_id IS DISTINCT FROM NEW.parent_id) EXECUTE FUNCTION item_closure_on_update();
@@ -0,0 +1,2 @@
+DROP INDEX IF EXISTS system_item_parent_index;
+CREATE INDEX system_item_parent_index ON system_item(parent_id);
@@ -0,0 +1,9 @@
+ALTER TABLE update_history ALTER COLUMN update_id DROP IDENTITY IF EXISTS;
+DROP SEQUENCE IF EXISTS update_history_seq;
+
+-- Шаг совпадает с allocationSize в ItemUpdate: Hibernate резервирует диапазон идентификаторов за одно обращение
+CREATE SEQUENCE update_history_seq INCREMENT BY 50 OWNED BY update_history.update_id;
+SELECT setval('update_history_seq', COALESCE((SELECT MAX(update_id) FROM update_history), 0) + 50);
+
+-- Вставки в обход Hibernate продолжают получать идентификатор по умолчанию
+ALTER TABLE update_history ALTER COLUMN update_id SET DEFAULT nextval('update_history_seq');
@@ -0,0 +1,76 @@
+DROP FUNCTION IF EXISTS create_update_history_partitions(timestamptz, timestamptz);
+
+-- Старая таблица освобождает имена ограничений, индексов и последовательность
+ALTER TABLE update_history RENAME TO update_history_old;
+ALTER TABLE update_history_old RENAME CONSTRAINT update_history_pkey TO update_history_old_pkey;
+ALTER TABLE update_history_old DROP CONSTRAINT item_id_fk;
+ALTER TABLE update_history_old ALTER COLUMN update_id DROP DEFAULT;
+ALTER SEQUENCE update_history_seq OWNED BY NONE;
+DROP INDEX IF EXISTS update_date_index;
+
+-- Ключ секционирования обязан входить в первичный ключ
+CREATE TABLE update_history(
+    update_id bigint NOT NULL DEFAULT nextval('update_history_seq'),
+    item_id VARCHAR(255) NOT NULL,
+    url VARCHAR(255),
+    date timestamptz NOT NULL,
+    parent_id VARCHAR(255),
+    type VARCHAR(10) NOT NULL,
+    size bigint,
+    PRIMARY KEY (update_id, date)
+) PARTITION BY RANGE (date);
+
+ALTER SEQUENCE update_history_seq OWNED BY update_history.update_id;
+
+ALTER TABLE update_history ADD CONSTRAINT item_id_fk
+    FOREIGN KEY (item_id) REFERENCES system_item(item_id) ON DELETE CASCADE;
+
+CREATE INDEX update_date_index ON update_history(date);
+
+-- Строки, для месяца которых еще нет секции
+CREATE TABLE update_history_default PARTITION OF update_history DEFAULT;
+
+-- Создание помесячных секций с from_date по to_date включительно, границы месяцев по UTC.
+-- Строки нового месяца, уже попавшие в секцию по умолчанию, переносятся в созданную секцию
+CREATE FUNCTION create_update_history_partitions(from_date timestamptz, to_date timestamptz) RETURNS int AS $$
+DECLARE
+    month_start timestamp := date_trunc('month', from_date AT TIME ZONE 'UTC');
+    last_month timestamp := date_trunc('month', to_date AT TIME ZONE 'UTC');
+    lower_bound timestamptz;
+    upper_bound timestamptz;
+    partition_name text;
+    created int := 0;
+BEGIN
+    WHILE month_start <= last_month LOOP
+        lower_bound := month_start AT TIME ZONE 'UTC';
+        upper_bound := (month_start + interval '1 month') AT TIME ZONE 'UTC';
+        partition_name := 'update_history_' || to_char(month_start, 'YYYY_MM');
+
+        IF to_regclass(partition_name) IS NULL THEN
+            EXECUTE format('CREATE TABLE %I (LIKE update_history INCLUDING DEFAULTS)', partition_name);
+            EXECUTE format(
+                'WITH moved AS (DELETE FROM update_history_default WHERE date >= %L AND date < %L RETURNING *) '
+                'INSERT INTO %I SELECT * FROM moved',
+                lower_bound, upper_bound, partition_name
+            );
+            EXECUTE format(
+                'ALTER TABLE update_history ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+                partition_name, lower_bound, upper_bound
+            );
+            created := created + 1;
+        END IF;
+
+        month_start := month_start + interval '1 month';
+    END LOOP;
+
+    RETURN created;
+END;
+$$ LANGUAGE plpgsql;
+
+INSERT INTO update_history(update_id, item_id, url, date, parent_id, type, size)
+SELECT update_id, item_id, url, date, parent_id, type, size FROM update_history_old;
+
+SELECT create_update_history_partitions(COALESCE(MIN(date), now()), now() + interval '3 months')
+FROM update_history;
+
+DROP TABLE update_history_old;
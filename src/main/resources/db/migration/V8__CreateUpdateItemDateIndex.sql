@@ -0,0 +1,6 @@
+-- История всегда запрашивается по элементу с условием на дату и сортировкой по (date, update_id)
+DROP INDEX IF EXISTS update_item_date_index;
+CREATE INDEX update_item_date_index ON update_history(item_id, date, update_id);
+
+-- Запросов истории только по дате нет, индекс лишь замедляет вставку
+DROP INDEX IF EXISTS update_date_index;
@@ -0,0 +1,5 @@
+-- По дате ищутся только файлы. Без индекса по дате папок их обновление при пересчете размера может быть HOT
+DROP INDEX IF EXISTS system_item_file_date_index;
+CREATE INDEX system_item_file_date_index ON system_item(date) WHERE type = 'FILE';
+
+DROP INDEX IF EXISTS system_item_date_index;
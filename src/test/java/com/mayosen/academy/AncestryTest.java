@@ -0,0 +1,77 @@
+package com.mayosen.academy;
+
+import com.mayosen.academy.domain.ItemType;
+import com.mayosen.academy.repos.ItemRepo;
+import com.mayosen.academy.requests.ItemImport;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.util.List;
+
+import static com.mayosen.academy.Utils.postRequest;
+import static com.mayosen.academy.Utils.requestOf;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class AncestryTest {
+    private final MockMvc mockMvc;
+    private final ItemRepo itemRepo;
+
+    @Autowired
+    public AncestryTest(MockMvc mockMvc, ItemRepo itemRepo) {
+        this.mockMvc = mockMvc;
+        this.itemRepo = itemRepo;
+    }
+
+    @Test
+    @Sql({"/sql/truncate.sql", "/sql/importGroup.sql"})
+    void storedAncestry() {
+        assertThat(itemRepo.findAncestorIds("f3"), contains("c2", "b1", "a"));
+        assertThat(itemRepo.findAncestorIds("a"), empty());
+        assertThat(itemRepo.findDescendantIds("b1"), containsInAnyOrder("c2", "f1", "f2", "f3"));
+        assertThat(itemRepo.findDescendantIds("f4"), empty());
+    }
+
+    @Test
+    @Sql("/sql/truncate.sql")
+    void importedAncestry() throws Exception {
+        List<ItemImport> items = List.of(
+                new ItemImport("file", "url", "child", ItemType.FILE, 10L),
+                new ItemImport("child", null, "parent", ItemType.FOLDER, null),
+                new ItemImport("parent", null, null, ItemType.FOLDER, null)
+        );
+        mockMvc.perform(postRequest(requestOf(items))).andExpect(status().isOk());
+
+        assertThat(itemRepo.findAncestorIds("file"), contains("child", "parent"));
+        assertThat(itemRepo.findDescendantIds("parent"), contains("child", "file"));
+    }
+
+    @Test
+    @Sql({"/sql/truncate.sql", "/sql/importGroup.sql"})
+    void movedSubtree() throws Exception {
+        ItemImport item = new ItemImport("b1", null, "c1", ItemType.FOLDER, null);
+        mockMvc.perform(postRequest(requestOf(item, Instant.parse("2022-10-10T12:00:00Z")))).andExpect(status().isOk());
+
+        assertThat(itemRepo.findAncestorIds("f3"), contains("c2", "b1", "c1", "b3", "a"));
+        assertThat(itemRepo.findDescendantIds("b3"), containsInAnyOrder("c1", "f6", "b1", "c2", "f1", "f2", "f3"));
+        assertThat(itemRepo.findDescendantIds("c2"), contains("f3"));
+    }
+
+    @Test
+    @Sql({"/sql/truncate.sql", "/sql/importGroup.sql"})
+    void deletedSubtree() throws Exception {
+        mockMvc.perform(delete("/delete/b1?date=2022-10-10T12:00:00Z")).andExpect(status().isOk());
+
+        assertThat(itemRepo.findDescendantIds("a"), containsInAnyOrder("b2", "b3", "c1", "f6"));
+        assertThat(itemRepo.findAncestorIds("f3"), empty());
+    }
+}
@@ -0,0 +1,192 @@
+package com.mayosen.academy;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mayosen.academy.domain.ItemType;
+import com.mayosen.academy.repos.ItemRepo;
+import com.mayosen.academy.requests.ItemImport;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.mayosen.academy.Utils.postRequest;
+import static com.mayosen.academy.Utils.requestOf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "academy.imports.async.enabled=true")
+@AutoConfigureMockMvc
+class AsyncImportTest {
+    private final MockMvc mockMvc;
+    private final ObjectMapper objectMapper;
+    private final ItemRepo itemRepo;
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired
+    public AsyncImportTest(
+            MockMvc mockMvc,
+            ObjectMapper objectMapper,
+            ItemRepo itemRepo,
+            TransactionTemplate transactionTemplate
+    ) {
+        this.mockMvc = mockMvc;
+        this.objectMapper = objectMapper;
+        this.itemRepo = itemRepo;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    private String submit(List<ItemImport> items, Instant updateDate) throws Exception {
+        String body = mockMvc
+                .perform(postRequest(requestOf(items, updateDate)))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.status").value("QUEUED"))
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body).get("id").asText();
+    }
+
+    /**
+     * Ожидание завершения импорта.
+     * @return итоговое состояние
+     */
+    private String awaitStatus(String ticketId) throws Exception {
+        for (int attempt = 0; attempt < 200; attempt++) {
+            String body = mockMvc
+                    .perform(get("/imports/" + ticketId))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            JsonNode ticket = objectMapper.readTree(body);
+            String status = ticket.get("status").asText();
+
+            if (status.equals("DONE") || status.equals("FAILED")) {
+                return status;
+            }
+
+            Thread.sleep(50);
+        }
+
+        return fail("Импорт " + ticketId + " не завершился");
+    }
+
+    @Test
+    @Sql({"/sql/truncate.sql", "/sql/importGroup.sql"})
+    void importsAreApplied() throws Exception {
+        Instant date = Instant.parse("2022-10-10T12:00:00Z");
+        List<String> tickets = new ArrayList<>();
+
+        // Импорты с одной датой применяются в одной транзакции по порядку, более поздняя версия f7 побеждает
+        tickets.add(submit(List.of(new ItemImport("f7", "url", "c1", ItemType.FILE, 10L)), date));
+        tickets.add(submit(List.of(new ItemImport("f7", "url", "c2", ItemType.FILE, 20L)), date));
+        tickets.add(submit(List.of(new ItemImport("f8", "url", "b2", ItemType.FILE, 5L)), date.plusSeconds(1)));
+
+        for (String ticket : tickets) {
+            assertEquals("DONE", awaitStatus(ticket));
+        }
+
+        mockMvc.perform(get("/nodes/c1")).andExpect(jsonPath("$.size").value(200));
+        mockMvc.perform(get("/nodes/c2")).andExpect(jsonPath("$.size").value(120));
+        mockMvc.perform(get("/nodes/b2")).andExpect(jsonPath("$.size").value(5));
+        mockMvc.perform(get("/nodes/a")).andExpect(jsonPath("$.size").value(435));
+    }
+
+    @Test
+    @Sql({"/sql/truncate.sql", "/sql/importGroup.sql"})
+    void failedImportDoesNotAffectOthers() throws Exception {
+        Instant date = Instant.parse("2022-10-10T12:00:00Z");
+        String first = submit(List.of(new ItemImport("f7", "url", "c1", ItemType.FILE, 10L)), date);
+        // Родитель - файл, ошибка обнаруживается только при применении
+        String failed = submit(List.of(new ItemImport("f8", "url", "f1", ItemType.FILE, 10L)), date);
+        String last = submit(List.of(new ItemImport("f9", "url", "b2", ItemType.FILE, 5L)), date);
+
+        assertEquals("DONE", awaitStatus(first));
+        assertEquals("FAILED", awaitStatus(failed));
+        assertEquals("DONE", awaitStatus(last));
+
+        mockMvc
+                .perform(get("/imports/" + failed))
+                .andExpect(jsonPath("$.message").value("Validation failed"));
+        mockMvc.perform(get("/nodes/f8")).andExpect(status().isNotFound());
+        mockMvc.perform(get("/nodes/a")).andExpect(jsonPath("$.size").value(425));
+    }
+
+    /**
+     * Ожидание, пока обработчик не заберет импорт.
+     */
+    private void awaitProcessing(String ticketId) throws Exception {
+        for (int attempt = 0; attempt < 200; attempt++) {
+            String body = mockMvc.perform(get("/imports/" + ticketId)).andReturn().getResponse().getContentAsString();
+
+            if (!objectMapper.readTree(body).get("status").asText().equals("QUEUED")) {
+                return;
+            }
+
+            Thread.sleep(50);
+        }
+
+        fail("Импорт " + ticketId + " не начался");
+    }
+
+    @Test
+    @Sql({"/sql/truncate.sql", "/sql/importGroup.sql"})
+    void laterImportDoesNotHideInvalidItem() throws Exception {
+        Instant date = Instant.parse("2022-10-10T12:00:00Z");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // Пока корень заблокирован, обработчик ждет на первом импорте, а следующие два попадают в одну партию
+        Future<?> lock = executor.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+            itemRepo.lockAllByIdIn(List.of("a"));
+            locked.countDown();
+
+            try {
+                release.await(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        locked.await(1, TimeUnit.MINUTES);
+        String blocked = submit(List.of(new ItemImport("f10", "url", "c2", ItemType.FILE, 1L)), date);
+        awaitProcessing(blocked);
+
+        // Родитель f8 - файл, поэтому импорт отклоняется целиком вместе с f9
+        String failed = submit(List.of(
+                new ItemImport("f8", "url", "f1", ItemType.FILE, 10L),
+                new ItemImport("f9", "url", "b2", ItemType.FILE, 5L)
+        ), date);
+        // Корректная версия f8 с той же датой не должна заменить ошибочную
+        String valid = submit(List.of(new ItemImport("f8", "url", "c1", ItemType.FILE, 10L)), date);
+        release.countDown();
+        lock.get(1, TimeUnit.MINUTES);
+        executor.shutdown();
+
+        assertEquals("DONE", awaitStatus(blocked));
+        assertEquals("FAILED", awaitStatus(failed));
+        assertEquals("DONE", awaitStatus(valid));
+
+        mockMvc.perform(get("/nodes/f9")).andExpect(status().isNotFound());
+        mockMvc.perform(get("/nodes/f8")).andExpect(jsonPath("$.parentId").value("c1"));
+        mockMvc.perform(get("/nodes/a")).andExpect(jsonPath("$.size").value(421));
+    }
+
+    @Test
+    void invalidFieldsRejectedImmediately() throws Exception {
+        ItemImport folder = new ItemImport("folder", "url", null, ItemType.FOLDER, null);
+        mockMvc.perform(postRequest(requestOf(folder))).andExpect(status().isBadRequest());
+        mockMvc.perform(get("/imports/unknown")).andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,187 @@
+package com.mayosen.academy;
+
+import com.mayosen.academy.domain.ItemType;
+import com.mayosen.academy.repos.ItemRepo;
+import com.mayosen.academy.requests.ItemImport;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.util.FileCopyUtils;
+
+import java.io.File;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.mayosen.academy.Utils.chainOf;
+import static com.mayosen.academy.Utils.postRequest;
+import static com.mayosen.academy.Utils.requestOf;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class BulkImportTest {
+    private static final String BULK_PATH = "/imports/bulk";
+
+    private final MockMvc mockMvc;
+    private final ResourceLoader resourceLoader;
+    private final ItemRepo itemRepo;
+
+    @Autowired
+    public BulkImportTest(MockMvc mockMvc, ResourceLoader resourceLoader, ItemRepo itemRepo) {
+        this.mockMvc = mockMvc;
+        this.resourceLoader = resourceLoader;
+        this.itemRepo = itemRepo;
+    }
+
+    @Test
+    @Sql("/sql/truncate.sql")
+    void importGroup() throws Exception {
+        File file = resourceLoader.getResource("classpath:data/group.json").getFile();
+        byte[] bytes = FileCopyUtils.copyToByteArray(file);
+        mockMvc
+                .perform(post(BULK_PATH).contentType(MediaType.APPLICATION_JSON).content(bytes))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/nodes/a")).andExpect(jsonPath("$.size").value(410));
+        mockMvc.perform(get("/nodes/f4")).andExpect(jsonPath("$.size").value(40));
+        mockMvc.perform(get("/nodes/b1")).andExpect(jsonPath("$.size").value(210));
+        mockMvc.perform(get("/nodes/b2")).andExpect(jsonPath("$.size").value(0));
+        mockMvc.perform(get("/nodes/c1")).andExpect(jsonPath("$.size").value(200));
+
+        // В файле дети идут раньше родителей
+        assertThat(itemRepo.findAncestorIds("f3"), contains("c2", "b1", "a"));
+        assertThat(itemRepo.findDescendantIds("b3"), containsInAnyOrder("c1", "f6"));
+    }
+
+    @Test
+    @Sql({"/sql/truncate.sql", "/sql/importGroup.sql"})
+    void moveFileToOtherFolder() throws Exception {
+        String updateDate = "2022-10-10T12:00:00Z";
+        ItemImport item = new ItemImport("f1", "f1-url", "c1", ItemType.FILE, 70L);
+        mockMvc
+                .perform(postRequest(BULK_PATH, requestOf(item, Instant.parse(updateDate))))
+                .andExpect(status().isOk());
+
+        mockMvc
+                .perform(get("/nodes/b1"))
+                .andExpect(jsonPath("$.size").value(160))
+                .andExpect(jsonPath("$.date").value(updateDate));
+        mockMvc
+                .perform(get("/nodes/c1"))
+                .andExpect(jsonPath("$.size").value(270))
+                .andExpect(jsonPath("$.date").value(updateDate));
+        mockMvc
+                .perform(get("/nodes/a"))
+                .andExpect(jsonPath("$.size").value(430))
+                .andExpect(jsonPath("$.date").value(updateDate));
+        mockMvc
+                .perform(get("/nodes/b2"))
+                .andExpect(jsonPath("$.date").value("2022-09-11T12:00:00Z"));
+
+        mockMvc
+                .perform(get("/node/b1/history"))
+                .andExpect(jsonPath("$.items", hasSize(1)))
+                .andExpect(jsonPath("$.items[0].size").value(160));
+        mockMvc
+                .perform(get("/node/b3/history"))
+                .andExpect(jsonPath("$.items", hasSize(1)))
+                .andExpect(jsonPath("$.items[0].size").value(270));
+    }
+
+    @Test
+    @Sql({"/sql/truncate.sql", "/sql/importGroup.sql"})
+    void moveFolderUnderNewFolder() throws Exception {
+        List<ItemImport> items = List.of(
+                new ItemImport("b1", null, "new", ItemType.FOLDER, null),
+                new ItemImport("new", null, "b3", ItemType.FOLDER, null)
+        );
+        mockMvc
+                .perform(postRequest(BULK_PATH, requestOf(items, Instant.parse("2022-10-10T12:00:00Z"))))
+                .andExpect(status().isOk());
+
+        assertThat(itemRepo.findAncestorIds("f3"), contains("c2", "b1", "new", "b3", "a"));
+        mockMvc.perform(get("/nodes/new")).andExpect(jsonPath("$.size").value(210));
+        mockMvc.perform(get("/nodes/b3")).andExpect(jsonPath("$.size").value(410));
+        mockMvc.perform(get("/nodes/a")).andExpect(jsonPath("$.size").value(410));
+    }
+
+    @Test
+    @Sql({"/sql/truncate.sql", "/sql/importGroup.sql"})
+    void changesInsideMovedFolder() throws Exception {
+        List<ItemImport> items = List.of(
+                new ItemImport("b1", null, "c1", ItemType.FOLDER, null),
+                new ItemImport("f1", "f1-url", "b1", ItemType.FILE, 70L),
+                new ItemImport("f3", "f3-url", "b2", ItemType.FILE, 100L)
+        );
+        mockMvc
+                .perform(postRequest(BULK_PATH, requestOf(items, Instant.parse("2022-10-10T12:00:00Z"))))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/nodes/c2")).andExpect(jsonPath("$.size").value(0));
+        mockMvc.perform(get("/nodes/b1")).andExpect(jsonPath("$.size").value(130));
+        mockMvc.perform(get("/nodes/c1")).andExpect(jsonPath("$.size").value(330));
+        mockMvc.perform(get("/nodes/b3")).andExpect(jsonPath("$.size").value(330));
+        mockMvc.perform(get("/nodes/b2")).andExpect(jsonPath("$.size").value(100));
+        mockMvc.perform(get("/nodes/a")).andExpect(jsonPath("$.size").value(430));
+    }
+
+    @Test
+    @Sql({"/sql/truncate.sql", "/sql/importGroup.sql"})
+    void validation() throws Exception {
+        List<ItemImport> invalidItems = List.of(
+                new ItemImport("b1", "url", "a", ItemType.FILE, 10L),
+                new ItemImport("new", null, "f1", ItemType.FOLDER, null),
+                new ItemImport("new", null, "missing", ItemType.FOLDER, null),
+                new ItemImport("new", null, null, ItemType.FOLDER, 10L),
+                new ItemImport("new", "url", null, ItemType.FILE, 0L)
+        );
+
+        for (ItemImport item : invalidItems) {
+            mockMvc
+                    .perform(postRequest(BULK_PATH, requestOf(item)))
+                    .andExpect(status().isBadRequest())
+                    .andExpect(jsonPath("$.code").value(400));
+        }
+
+        List<ItemImport> cycle = List.of(
+                new ItemImport("x", null, "y", ItemType.FOLDER, null),
+                new ItemImport("y", null, "x", ItemType.FOLDER, null)
+        );
+        mockMvc
+                .perform(postRequest(BULK_PATH, requestOf(cycle)))
+                .andExpect(status().isBadRequest());
+
+        ItemImport intoSubtree = new ItemImport("b1", null, "c2", ItemType.FOLDER, null);
+        mockMvc
+                .perform(postRequest(BULK_PATH, requestOf(intoSubtree)))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(get("/nodes/new")).andExpect(status().isNotFound());
+        mockMvc.perform(get("/nodes/b1")).andExpect(jsonPath("$.type").value("FOLDER"));
+    }
+
+    @Test
+    @Sql({"/sql/truncate.sql", "/sql/importGroup.sql"})
+    void depthLimit() throws Exception {
+        // Папка a с поддеревом высотой 3 оказывается на глубине 598, а f3 - на 601
+        List<ItemImport> items = new ArrayList<>(chainOf(598));
+        items.add(new ItemImport("a", null, "d597", ItemType.FOLDER, null));
+        mockMvc
+                .perform(postRequest(BULK_PATH, requestOf(items)))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(get("/nodes/d0")).andExpect(status().isNotFound());
+        assertThat(itemRepo.findAncestorIds("f3"), contains("c2", "b1", "a"));
+    }
+}
@@ -0,0 +1,40 @@
+package com.mayosen.academy;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mayosen.academy.config.ConcurrencyLimitFilter;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Запрос сверх ограничения получает 503, не дожидаясь освобождения места.
+ * Вложенный вызов фильтра занимает второе место, пока первый запрос еще обрабатывается.
+ */
+class ConcurrencyLimitFilterTest {
+    private final ConcurrencyLimitFilter filter =
+            new ConcurrencyLimitFilter(1, Duration.ofMillis(10), new ObjectMapper());
+
+    @Test
+    void extraRequestRejected() throws Exception {
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        MockHttpServletResponse second = new MockHttpServletResponse();
+
+        filter.doFilter(new MockHttpServletRequest(), first, (request, response) ->
+                filter.doFilter(new MockHttpServletRequest(), second, (nested, nestedResponse) -> { })
+        );
+
+        assertEquals(200, first.getStatus());
+        assertEquals(503, second.getStatus());
+        assertThat(second.getContentAsString(), containsString("\"code\":503"));
+
+        MockHttpServletResponse third = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest(), third, (request, response) -> { });
+        assertEquals(200, third.getStatus());
+    }
+}
@@ -0,0 +1,226 @@
+package com.mayosen.academy;
+
+import com.mayosen.academy.domain.ItemType;
+import com.mayosen.academy.repos.ItemRepo;
+import com.mayosen.academy.requests.ItemImport;
+import com.mayosen.academy.services.LockRetry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.mayosen.academy.Utils.postRequest;
+import static com.mayosen.academy.Utils.requestOf;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Параллельные импорты в папки с общими предками не должны терять изменения размеров.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class ConcurrentImportTest {
+    private static final int IMPORTERS = 8;
+    private static final int IMPORTS_PER_IMPORTER = 10;
+    private static final List<String> FOLDERS = List.of("c1", "c2", "b2", "b3");
+
+    /**
+     * Папки, размер которых не совпадает с суммой файлов в поддереве.
+     */
+    private static final String INCONSISTENT_FOLDERS = """
+            SELECT f.item_id FROM system_item f
+            LEFT JOIN item_closure c ON c.ancestor_id = f.item_id AND c.depth > 0
+            LEFT JOIN system_item d ON d.item_id = c.descendant_id AND d.type = 'FILE'
+            WHERE f.type = 'FOLDER'
+            GROUP BY f.item_id, f.size
+            HAVING f.size <> COALESCE(SUM(d.size), 0)""";
+
+    private final MockMvc mockMvc;
+    private final JdbcTemplate jdbcTemplate;
+    private final ItemRepo itemRepo;
+    private final LockRetry lockRetry;
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired
+    public ConcurrentImportTest(
+            MockMvc mockMvc,
+            JdbcTemplate jdbcTemplate,
+            ItemRepo itemRepo,
+            LockRetry lockRetry,
+            TransactionTemplate transactionTemplate
+    ) {
+        this.mockMvc = mockMvc;
+        this.jdbcTemplate = jdbcTemplate;
+        this.itemRepo = itemRepo;
+        this.lockRetry = lockRetry;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @Test
+    @Sql({"/sql/truncate.sql", "/sql/importGroup.sql"})
+    void parallelImporters() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(IMPORTERS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Long>> results = new ArrayList<>();
+
+        for (int importer = 0; importer < IMPORTERS; importer++) {
+            int importerId = importer;
+            results.add(executor.submit(() -> {
+                start.await();
+                return runImporter(importerId);
+            }));
+        }
+
+        start.countDown();
+        long addedSize = 0;
+
+        for (Future<Long> result : results) {
+            addedSize += result.get(2, TimeUnit.MINUTES);
+        }
+
+        executor.shutdown();
+
+        mockMvc.perform(get("/nodes/a")).andExpect(jsonPath("$.size").value(410 + addedSize));
+        assertThat(jdbcTemplate.queryForList(INCONSISTENT_FOLDERS, String.class), empty());
+    }
+
+    /**
+     * Файлы добавляются в папки, которые параллельно переносятся между ветками дерева.
+     * Новый предок может оказаться меньше уже заблокированных строк, и такой импорт должен повториться, а не упасть.
+     */
+    @Test
+    @Sql({"/sql/truncate.sql", "/sql/importGroup.sql"})
+    void parallelFolderMoves() throws Exception {
+        List<ItemImport> movedFolders = new ArrayList<>();
+
+        for (int importer = 0; importer < IMPORTERS / 2; importer++) {
+            movedFolders.add(new ItemImport("m" + importer, null, FOLDERS.get(importer), ItemType.FOLDER, null));
+        }
+
+        mockMvc.perform(postRequest(requestOf(movedFolders))).andExpect(status().isOk());
+        ExecutorService executor = Executors.newFixedThreadPool(IMPORTERS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Long>> results = new ArrayList<>();
+
+        for (int importer = 0; importer < IMPORTERS; importer++) {
+            int importerId = importer;
+            results.add(executor.submit(() -> {
+                start.await();
+                return importerId % 2 == 0 ? moveFolder(importerId / 2) : addFiles(importerId / 2);
+            }));
+        }
+
+        start.countDown();
+        long addedSize = 0;
+
+        for (Future<Long> result : results) {
+            addedSize += result.get(2, TimeUnit.MINUTES);
+        }
+
+        executor.shutdown();
+
+        mockMvc.perform(get("/nodes/a")).andExpect(jsonPath("$.size").value(410 + addedSize));
+        assertThat(jdbcTemplate.queryForList(INCONSISTENT_FOLDERS, String.class), empty());
+    }
+
+    /**
+     * Две транзакции блокируют одни и те же строки в разном порядке, как при переносе цепочки между кругами блокировки.
+     * База откатывает одну из них, и она повторяется уже после завершения другой.
+     */
+    @Test
+    @Sql({"/sql/truncate.sql", "/sql/importGroup.sql"})
+    void deadlockLoserIsRetried() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        CyclicBarrier firstLocked = new CyclicBarrier(2);
+        AtomicInteger attempts = new AtomicInteger();
+        List<Future<?>> results = new ArrayList<>();
+
+        for (List<String> order : List.of(List.of("b2", "c1"), List.of("c1", "b2"))) {
+            results.add(executor.submit(() -> lockRetry.run(() -> transactionTemplate.executeWithoutResult(status -> {
+                boolean firstAttempt = attempts.incrementAndGet() <= 2;
+                itemRepo.lockAllByIdIn(List.of(order.get(0)));
+
+                if (firstAttempt) {
+                    await(firstLocked);
+                }
+
+                itemRepo.lockAllByIdIn(List.of(order.get(1)));
+            }))));
+        }
+
+        for (Future<?> result : results) {
+            result.get(2, TimeUnit.MINUTES);
+        }
+
+        executor.shutdown();
+        assertEquals(3, attempts.get());
+    }
+
+    private static void await(CyclicBarrier barrier) {
+        try {
+            barrier.await(1, TimeUnit.MINUTES);
+        } catch (InterruptedException | BrokenBarrierException | TimeoutException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private long moveFolder(int folder) throws Exception {
+        for (int i = 0; i < IMPORTS_PER_IMPORTER; i++) {
+            String parent = FOLDERS.get((folder + i + 1) % FOLDERS.size());
+            ItemImport moved = new ItemImport("m" + folder, null, parent, ItemType.FOLDER, null);
+            mockMvc.perform(postRequest(requestOf(moved))).andExpect(status().isOk());
+        }
+
+        return 0;
+    }
+
+    private long addFiles(int folder) throws Exception {
+        long addedSize = 0;
+
+        for (int i = 0; i < IMPORTS_PER_IMPORTER; i++) {
+            ItemImport created = new ItemImport("m" + folder + "-" + i, "url", "m" + folder, ItemType.FILE, 10L + i);
+            mockMvc.perform(postRequest(requestOf(created))).andExpect(status().isOk());
+            addedSize += 10L + i;
+        }
+
+        return addedSize;
+    }
+
+    /**
+     * Каждый импортер добавляет свой файл и затем переносит его в другую папку с новым размером.
+     * Половина импортеров использует массовую загрузку.
+     * @return итоговый размер добавленных файлов
+     */
+    private long runImporter(int importerId) throws Exception {
+        long addedSize = 0;
+        String path = importerId % 2 == 0 ? "/imports" : "/imports/bulk";
+
+        for (int i = 0; i < IMPORTS_PER_IMPORTER; i++) {
+            String id = "t" + importerId + "-" + i;
+            String folder = FOLDERS.get((importerId + i) % FOLDERS.size());
+            String otherFolder = FOLDERS.get((importerId + i + 1) % FOLDERS.size());
+
+            ItemImport created = new ItemImport(id, "url", folder, ItemType.FILE, 10L + i);
+            mockMvc.perform(postRequest(path, requestOf(created))).andExpect(status().isOk());
+
+            ItemImport moved = new ItemImport(id, "url", otherFolder, ItemType.FILE, 20L + i);
+            mockMvc.perform(postRequest(path, requestOf(moved))).andExpect(status().isOk());
+            addedSize += 20L + i;
+        }
+
+        return addedSize;
+    }
+}
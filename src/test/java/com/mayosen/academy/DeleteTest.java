@@ -14,6 +14,7 @@ import java.time.Instant;
 
 import static com.mayosen.academy.Utils.postRequest;
 import static com.mayosen.academy.Utils.requestOf;
+import static org.hamcrest.Matchers.hasSize;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
@@ -85,6 +86,24 @@ class DeleteTest {
                 .andExpect(jsonPath("$.date").value("2022-09-11T12:00:00Z"));
     }
 
+    @Test
+    @Sql({"/sql/truncate.sql", "/sql/importGroup.sql"})
+    void updateParentsHistory() throws Exception {
+        String date = "2022-11-11T12:00:00Z";
+        mockMvc.perform(deleteRequest("f3", date)).andExpect(status().isOk());
+
+        mockMvc.perform(get("/node/b1/history"))
+                .andExpect(jsonPath("$.items", hasSize(1)))
+                .andExpect(jsonPath("$.items[0].size").value(110))
+                .andExpect(jsonPath("$.items[0].parentId").value("a"))
+                .andExpect(jsonPath("$.items[0].date").value(date));
+        mockMvc.perform(get("/node/a/history"))
+                .andExpect(jsonPath("$.items", hasSize(1)))
+                .andExpect(jsonPath("$.items[0].size").value(310));
+        mockMvc.perform(get("/node/b3/history"))
+                .andExpect(jsonPath("$.items", hasSize(0)));
+    }
+
     @Test
     @Sql("/sql/truncate.sql")
     void deleteItemWithBlankId() throws Exception {
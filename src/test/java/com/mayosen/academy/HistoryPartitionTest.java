@@ -0,0 +1,79 @@
+package com.mayosen.academy;
+
+import com.mayosen.academy.services.HistoryPartitionService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class HistoryPartitionTest {
+    private final MockMvc mockMvc;
+    private final HistoryPartitionService partitionService;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public HistoryPartitionTest(MockMvc mockMvc, HistoryPartitionService partitionService, JdbcTemplate jdbcTemplate) {
+        this.mockMvc = mockMvc;
+        this.partitionService = partitionService;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    private List<String> partitionsOf(String id) {
+        return jdbcTemplate.queryForList(
+                "SELECT DISTINCT tableoid::regclass::text FROM update_history WHERE item_id = ?", String.class, id
+        );
+    }
+
+    @Test
+    @Sql({"/sql/truncate.sql", "/sql/fillUpdates.sql"})
+    void rowsMovedFromDefaultPartition() throws Exception {
+        OffsetDateTime october = OffsetDateTime.parse("2022-10-15T00:00:00Z");
+        partitionService.createPartitions(october, october);
+
+        assertThat(partitionsOf("file"), contains("update_history_2022_10"));
+        assertThat(partitionService.createPartitions(october, october), is(0));
+
+        mockMvc
+                .perform(get("/node/file/history?dateStart=2022-10-10T13:00:00Z&dateEnd=2022-10-10T15:00:00Z"))
+                .andExpect(jsonPath("$.items", hasSize(2)));
+    }
+
+    @Test
+    @Sql("/sql/truncate.sql")
+    void currentMonthsCreatedOnStartup() {
+        String currentMonth = jdbcTemplate.queryForObject(
+                "SELECT to_char(now() AT TIME ZONE 'UTC', '\"update_history_\"YYYY_MM')", String.class
+        );
+        assertThat(jdbcTemplate.queryForObject("SELECT to_regclass(?)::text", String.class, currentMonth),
+                is(currentMonth));
+    }
+
+    @Test
+    @Sql({"/sql/truncate.sql", "/sql/fillUpdates.sql"})
+    void intervalQueryPrunesPartitions() {
+        OffsetDateTime october = OffsetDateTime.parse("2022-10-15T00:00:00Z");
+        partitionService.createPartitions(october, october.plusMonths(1));
+
+        String plan = String.join("\n", jdbcTemplate.queryForList("""
+                EXPLAIN SELECT * FROM update_history
+                WHERE item_id = 'file' AND date >= '2022-10-10T13:00:00Z' AND date < '2022-10-10T15:00:00Z'""",
+                String.class
+        ));
+        assertThat(plan, containsString("update_history_2022_10"));
+        assertThat(plan, not(containsString("update_history_2022_11")));
+        assertThat(plan, not(containsString("update_history_default")));
+    }
+}
@@ -1,22 +1,29 @@
 package com.mayosen.academy;
 
+import com.jayway.jsonpath.JsonPath;
 import com.mayosen.academy.domain.ItemType;
 import com.mayosen.academy.requests.ItemImport;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.jdbc.Sql;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.time.Instant;
 import java.util.List;
 
 import static com.mayosen.academy.Utils.postRequest;
 import static com.mayosen.academy.Utils.requestOf;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -137,4 +144,76 @@ class HistoryTest {
                 .andExpect(jsonPath("$.items").isArray())
                 .andExpect(jsonPath("$.items", hasSize(3)));
     }
+
+    @Test
+    @Sql({"/sql/truncate.sql", "/sql/fillUpdates.sql"})
+    void pages() throws Exception {
+        MvcResult first = mockMvc
+                .perform(get("/node/file/history?limit=3&dateStart=2022-10-10T13:00:00Z"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].date",
+                        contains("2022-10-10T13:00:00Z", "2022-10-10T14:00:00Z", "2022-10-10T15:00:00Z")))
+                .andExpect(jsonPath("$.next").isString())
+                .andReturn();
+        String cursor = JsonPath.read(first.getResponse().getContentAsString(), "$.next");
+
+        mockMvc
+                .perform(get("/node/file/history?limit=3&dateStart=2022-10-10T13:00:00Z&cursor=" + cursor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].date",
+                        contains("2022-10-10T16:00:00Z", "2022-10-10T17:00:00Z", "2022-10-10T18:00:00Z")))
+                .andExpect(jsonPath("$.next").doesNotExist());
+    }
+
+    @Test
+    @Sql({"/sql/truncate.sql", "/sql/fillUpdates.sql"})
+    void invalidPage() throws Exception {
+        mockMvc
+                .perform(get("/node/file/history?cursor=broken"))
+                .andExpect(status().isBadRequest());
+        mockMvc
+                .perform(get("/node/file/history?limit=0"))
+                .andExpect(status().isBadRequest());
+        mockMvc
+                .perform(get("/node/file/history?limit=100000"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Sql({"/sql/truncate.sql", "/sql/fillUpdates.sql"})
+    void exportJsonArray() throws Exception {
+        mockMvc
+                .perform(get("/node/file/history/export?dateStart=2022-10-10T16:00:00Z"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$[*].date",
+                        contains("2022-10-10T16:00:00Z", "2022-10-10T17:00:00Z", "2022-10-10T18:00:00Z")))
+                .andExpect(jsonPath("$[0].id").value("file"));
+    }
+
+    @Test
+    @Sql({"/sql/truncate.sql", "/sql/fillUpdates.sql"})
+    void exportNdjson() throws Exception {
+        String body = mockMvc
+                .perform(get("/node/file/history/export?format=ndjson"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertThat(lines.length, is(7));
+        assertThat(JsonPath.read(lines[0], "$.date"), is("2022-10-10T12:00:00Z"));
+        assertThat(JsonPath.read(lines[6], "$.date"), is("2022-10-10T18:00:00Z"));
+    }
+
+    @Test
+    @Sql("/sql/truncate.sql")
+    void exportNotFound() throws Exception {
+        mockMvc
+                .perform(get("/node/file/history/export"))
+                .andExpect(status().isNotFound());
+        mockMvc
+                .perform(get("/node/file/history/export?format=xml"))
+                .andExpect(status().isBadRequest());
+    }
 }
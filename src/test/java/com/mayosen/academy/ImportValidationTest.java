@@ -12,11 +12,14 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.ResultActions;
 
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+import static com.mayosen.academy.Utils.chainOf;
 import static com.mayosen.academy.Utils.postRequest;
 import static com.mayosen.academy.Utils.requestOf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
@@ -161,4 +164,45 @@ class ImportValidationTest {
         ItemImport file = new ItemImport("file", "", "folder", ItemType.FILE, 40L);
         mockMvc.perform(postRequest(requestOf(file))).andExpect(status().isOk());
     }
+
+    @Test
+    @Sql({"/sql/truncate.sql", "/sql/importGroup.sql"})
+    void cycle() throws Exception {
+        List<ItemImport> items = List.of(
+                new ItemImport("x", null, "y", ItemType.FOLDER, null),
+                new ItemImport("y", null, "z", ItemType.FOLDER, null),
+                new ItemImport("z", null, "x", ItemType.FOLDER, null)
+        );
+        expectValidationFailed(mockMvc.perform(postRequest(requestOf(items))));
+
+        // Цикл через сохраненных потомков
+        List<ItemImport> intoSubtree = List.of(
+                new ItemImport("b1", null, "new", ItemType.FOLDER, null),
+                new ItemImport("new", null, "c2", ItemType.FOLDER, null)
+        );
+        expectValidationFailed(mockMvc.perform(postRequest(requestOf(intoSubtree))));
+
+        // Перенос папки в собственное сохраненное поддерево
+        ItemImport moved = new ItemImport("b1", null, "c2", ItemType.FOLDER, null);
+        expectValidationFailed(mockMvc.perform(postRequest(requestOf(moved))));
+
+        mockMvc.perform(get("/nodes/x")).andExpect(status().isNotFound());
+        mockMvc.perform(get("/nodes/new")).andExpect(status().isNotFound());
+        mockMvc.perform(get("/nodes/b1")).andExpect(jsonPath("$.parentId").value("a"));
+        mockMvc.perform(get("/nodes/a")).andExpect(jsonPath("$.size").value(410));
+    }
+
+    @Test
+    @Sql({"/sql/truncate.sql", "/sql/importGroup.sql"})
+    void depthLimit() throws Exception {
+        // В тестах наибольшая глубина 600
+        expectValidationFailed(mockMvc.perform(postRequest(requestOf(chainOf(602)))));
+
+        // Папка a с поддеревом высотой 3 оказывается на глубине 598, а f3 - на 601
+        List<ItemImport> items = new ArrayList<>(chainOf(598));
+        items.add(new ItemImport("a", null, "d597", ItemType.FOLDER, null));
+        expectValidationFailed(mockMvc.perform(postRequest(requestOf(items))));
+
+        mockMvc.perform(postRequest(requestOf(chainOf(601)))).andExpect(status().isOk());
+    }
 }
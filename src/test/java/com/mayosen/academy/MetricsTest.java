@@ -0,0 +1,94 @@
+package com.mayosen.academy;
+
+import com.mayosen.academy.domain.ItemType;
+import com.mayosen.academy.requests.ItemImport;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static com.mayosen.academy.Utils.postRequest;
+import static com.mayosen.academy.Utils.requestOf;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+// Без этой аннотации тесты заменяют реестр Prometheus на простой
+@AutoConfigureMetrics
+class MetricsTest {
+    private final MockMvc mockMvc;
+    private final MeterRegistry registry;
+
+    @Autowired
+    public MetricsTest(MockMvc mockMvc, MeterRegistry registry) {
+        this.mockMvc = mockMvc;
+        this.registry = registry;
+    }
+
+    /**
+     * Количество записей и сумма значений распределения. Отсутствующее распределение считается пустым.
+     */
+    private double[] snapshot(String name, String... tags) {
+        DistributionSummary summary = registry.find(name).tags(tags).summary();
+        return summary == null ? new double[2] : new double[]{summary.count(), summary.totalAmount()};
+    }
+
+    private void assertRecorded(double[] before, String name, double amount, String... tags) {
+        double[] after = snapshot(name, tags);
+        assertEquals(before[0] + 1, after[0], name);
+        assertEquals(before[1] + amount, after[1], name);
+    }
+
+    @Test
+    @Sql({"/sql/truncate.sql", "/sql/importGroup.sql"})
+    void importAndDelete() throws Exception {
+        double[] batch = snapshot("academy.imports.batch.size", "mode", "regular");
+        double[] importAncestors = snapshot("academy.ancestors.updated", "operation", "import");
+        double[] deleteAncestors = snapshot("academy.ancestors.updated", "operation", "delete");
+        double history = registry.counter("academy.history.rows.written", "mode", "regular").count();
+
+        ItemImport file = new ItemImport("f7", "url", "c1", ItemType.FILE, 10L);
+        mockMvc.perform(postRequest(requestOf(file))).andExpect(status().isOk());
+        // Файл и его предки c1, b3, a
+        assertRecorded(batch, "academy.imports.batch.size", 1, "mode", "regular");
+        assertRecorded(importAncestors, "academy.ancestors.updated", 3, "operation", "import");
+        assertEquals(history + 4, registry.counter("academy.history.rows.written", "mode", "regular").count());
+
+        mockMvc
+                .perform(delete("/delete/f6").param("date", "2022-10-10T12:00:00Z"))
+                .andExpect(status().isOk());
+        assertRecorded(deleteAncestors, "academy.ancestors.updated", 3, "operation", "delete");
+    }
+
+    @Test
+    @Sql({"/sql/truncate.sql", "/sql/importGroup.sql"})
+    void nodesSubtreeAndStatements() throws Exception {
+        double[] subtree = snapshot("academy.nodes.subtree.size");
+        double[] statements = snapshot("academy.http.statements", "method", "GET", "uri", "/nodes/{id}");
+
+        mockMvc.perform(get("/nodes/b3")).andExpect(status().isOk());
+        // Поддерево b3, c1, f6 читается одним запросом
+        assertRecorded(subtree, "academy.nodes.subtree.size", 3);
+        assertRecorded(statements, "academy.http.statements", 1, "method", "GET", "uri", "/nodes/{id}");
+    }
+
+    @Test
+    void prometheusEndpoint() throws Exception {
+        mockMvc.perform(get("/nodes/unknown")).andExpect(status().isNotFound());
+        mockMvc
+                .perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("http_server_requests_seconds_bucket")))
+                .andExpect(content().string(containsString("academy_http_statements_count")));
+    }
+}
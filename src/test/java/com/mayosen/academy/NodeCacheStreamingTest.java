@@ -0,0 +1,82 @@
+package com.mayosen.academy;
+
+import com.mayosen.academy.services.NodeCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Промах кэша в потоковом режиме пишется в ответ напрямую.
+ * Ответ поддерева b3 меньше предела и кэшируется, ответ корня a больше предела и не кэшируется.
+ */
+@SpringBootTest(properties = {
+        "academy.nodes.cache.enabled=true",
+        "academy.nodes.streaming=true",
+        "academy.nodes.cache.max-entry-size=500B"
+})
+@AutoConfigureMockMvc
+class NodeCacheStreamingTest {
+    private final MockMvc mockMvc;
+    private final NodeCache nodeCache;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public NodeCacheStreamingTest(MockMvc mockMvc, NodeCache nodeCache, JdbcTemplate jdbcTemplate) {
+        this.mockMvc = mockMvc;
+        this.nodeCache = nodeCache;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @BeforeEach
+    void clearCache() {
+        nodeCache.clear();
+    }
+
+    private void changeSizeDirectly(String id) {
+        jdbcTemplate.update("UPDATE system_item SET size = -1 WHERE item_id = ?", id);
+    }
+
+    @Test
+    @Sql({"/sql/truncate.sql", "/sql/importGroup.sql"})
+    void streamedMissIsCached() throws Exception {
+        mockMvc
+                .perform(get("/nodes/b3"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("ETag"))
+                .andExpect(jsonPath("$.size").value(200));
+        changeSizeDirectly("b3");
+
+        mockMvc
+                .perform(get("/nodes/b3"))
+                .andExpect(header().exists("ETag"))
+                .andExpect(jsonPath("$.size").value(200));
+    }
+
+    @Test
+    @Sql({"/sql/truncate.sql", "/sql/importGroup.sql"})
+    void largeResponseIsNotCached() throws Exception {
+        mockMvc.perform(get("/nodes/a")).andExpect(jsonPath("$.size").value(410));
+        changeSizeDirectly("a");
+
+        mockMvc
+                .perform(get("/nodes/a"))
+                .andExpect(header().doesNotExist("ETag"))
+                .andExpect(jsonPath("$.size").value(-1));
+    }
+
+    @Test
+    @Sql("/sql/truncate.sql")
+    void missingItem() throws Exception {
+        mockMvc.perform(get("/nodes/unknown")).andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,135 @@
+package com.mayosen.academy;
+
+import com.mayosen.academy.domain.ItemType;
+import com.mayosen.academy.requests.ItemImport;
+import com.mayosen.academy.services.NodeCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+
+import static com.mayosen.academy.Utils.postRequest;
+import static com.mayosen.academy.Utils.requestOf;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.not;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "academy.nodes.cache.enabled=true")
+@AutoConfigureMockMvc
+class NodeCacheTest {
+    private final MockMvc mockMvc;
+    private final NodeCache nodeCache;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public NodeCacheTest(MockMvc mockMvc, NodeCache nodeCache, JdbcTemplate jdbcTemplate) {
+        this.mockMvc = mockMvc;
+        this.nodeCache = nodeCache;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @BeforeEach
+    void clearCache() {
+        nodeCache.clear();
+    }
+
+    /**
+     * Изменение в обход приложения, которое не должно быть видно, пока запись в кэше актуальна.
+     */
+    private void changeSizeDirectly(String id) {
+        jdbcTemplate.update("UPDATE system_item SET size = -1 WHERE item_id = ?", id);
+    }
+
+    @Test
+    @Sql({"/sql/truncate.sql", "/sql/importGroup.sql"})
+    void cachedUntilChanged() throws Exception {
+        mockMvc.perform(get("/nodes/b3")).andExpect(jsonPath("$.size").value(200));
+        changeSizeDirectly("b3");
+        mockMvc.perform(get("/nodes/b3")).andExpect(jsonPath("$.size").value(200));
+
+        ItemImport item = new ItemImport("f7", "f7-url", "c1", ItemType.FILE, 10L);
+        mockMvc.perform(postRequest(requestOf(item))).andExpect(status().isOk());
+
+        // Размеры папок пересчитываются от сохраненных, поэтому виден и размер, измененный в обход приложения
+        mockMvc.perform(get("/nodes/b3"))
+                .andExpect(jsonPath("$.size").value(9))
+                .andExpect(jsonPath("$.children[0].children", hasSize(2)));
+    }
+
+    @Test
+    @Sql({"/sql/truncate.sql", "/sql/importGroup.sql"})
+    void otherBranchesStayCached() throws Exception {
+        mockMvc.perform(get("/nodes/b3")).andExpect(jsonPath("$.size").value(200));
+        changeSizeDirectly("b3");
+
+        ItemImport item = new ItemImport("f7", "f7-url", "c2", ItemType.FILE, 10L);
+        mockMvc.perform(postRequest(requestOf(item))).andExpect(status().isOk());
+
+        mockMvc.perform(get("/nodes/b3")).andExpect(jsonPath("$.size").value(200));
+        mockMvc.perform(get("/nodes/a")).andExpect(jsonPath("$.size").value(420));
+    }
+
+    @Test
+    @Sql({"/sql/truncate.sql", "/sql/importGroup.sql"})
+    void movedItemLeavesOldParents() throws Exception {
+        mockMvc.perform(get("/nodes/c2")).andExpect(jsonPath("$.children", hasSize(1)));
+        mockMvc.perform(get("/nodes/b1")).andExpect(jsonPath("$.size").value(210));
+
+        ItemImport item = new ItemImport("f3", "f3-url", "b3", ItemType.FILE, 100L);
+        mockMvc
+                .perform(postRequest(requestOf(item, Instant.parse("2022-10-10T12:00:00Z"))))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/nodes/c2")).andExpect(jsonPath("$.children", hasSize(0)));
+        mockMvc.perform(get("/nodes/b1")).andExpect(jsonPath("$.size").value(110));
+        mockMvc.perform(get("/nodes/f3")).andExpect(jsonPath("$.parentId").value("b3"));
+    }
+
+    @Test
+    @Sql({"/sql/truncate.sql", "/sql/importGroup.sql"})
+    void deletedSubtreeIsEvicted() throws Exception {
+        mockMvc.perform(get("/nodes/c2")).andExpect(status().isOk());
+        mockMvc.perform(get("/nodes/a")).andExpect(jsonPath("$.size").value(410));
+
+        mockMvc.perform(delete("/delete/b1?date=2022-10-10T12:00:00Z")).andExpect(status().isOk());
+
+        mockMvc.perform(get("/nodes/c2")).andExpect(status().isNotFound());
+        mockMvc.perform(get("/nodes/a")).andExpect(jsonPath("$.size").value(200));
+    }
+
+    @Test
+    @Sql({"/sql/truncate.sql", "/sql/importGroup.sql"})
+    void notModified() throws Exception {
+        String etag = mockMvc
+                .perform(get("/nodes/b1"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc
+                .perform(get("/nodes/b1").header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", etag))
+                .andExpect(content().string(""));
+
+        ItemImport item = new ItemImport("f7", "f7-url", "c2", ItemType.FILE, 10L);
+        mockMvc.perform(postRequest(requestOf(item))).andExpect(status().isOk());
+
+        mockMvc
+                .perform(get("/nodes/b1").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", not(etag)))
+                .andExpect(jsonPath("$.size").value(220));
+    }
+}
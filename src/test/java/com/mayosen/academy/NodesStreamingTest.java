@@ -0,0 +1,20 @@
+package com.mayosen.academy;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.test.web.servlet.MockMvc;
+
+/**
+ * Те же проверки, что и в {@link NodesTest}, для потоковой записи ответа.
+ */
+@SpringBootTest(properties = "academy.nodes.streaming=true")
+@AutoConfigureMockMvc
+class NodesStreamingTest extends NodesTest {
+    @Autowired
+    public NodesStreamingTest(MockMvc mockMvc, ResourceLoader resourceLoader, ObjectMapper objectMapper) {
+        super(mockMvc, resourceLoader, objectMapper);
+    }
+}
@@ -1,5 +1,6 @@
 package com.mayosen.academy;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mayosen.academy.domain.ItemType;
 import com.mayosen.academy.requests.ItemImport;
 import org.junit.jupiter.api.Test;
@@ -15,11 +16,13 @@ import org.springframework.util.FileCopyUtils;
 
 import java.io.File;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 
 import static com.mayosen.academy.Utils.postRequest;
 import static com.mayosen.academy.Utils.requestOf;
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
@@ -30,11 +33,13 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 class NodesTest {
     private final MockMvc mockMvc;
     private final ResourceLoader resourceLoader;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public NodesTest(MockMvc mockMvc, ResourceLoader resourceLoader) {
+    public NodesTest(MockMvc mockMvc, ResourceLoader resourceLoader, ObjectMapper objectMapper) {
         this.mockMvc = mockMvc;
         this.resourceLoader = resourceLoader;
+        this.objectMapper = objectMapper;
     }
 
     private MockHttpServletRequestBuilder postFileRequest(String filename) throws Exception {
@@ -194,6 +199,20 @@ class NodesTest {
                 .andExpect(jsonPath("$.date").value(expectedDate));
     }
 
+    @Test
+    @Sql({"/sql/truncate.sql", "/sql/importGroup.sql"})
+    void moveAndResizeFile() throws Exception {
+        ItemImport item = new ItemImport("f3", "f3-url", "b3", ItemType.FILE, 150L);
+        mockMvc
+                .perform(postRequest(requestOf(item, Instant.parse("2022-10-10T12:00:00.000Z"))))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/nodes/c2")).andExpect(jsonPath("$.size").value(0));
+        mockMvc.perform(get("/nodes/b1")).andExpect(jsonPath("$.size").value(110));
+        mockMvc.perform(get("/nodes/b3")).andExpect(jsonPath("$.size").value(350));
+        mockMvc.perform(get("/nodes/a")).andExpect(jsonPath("$.size").value(460));
+    }
+
     @Test
     @Sql({"/sql/truncate.sql", "/sql/importGroup.sql"})
     void moveFolderToOtherFolder() throws Exception {
@@ -250,6 +269,17 @@ class NodesTest {
                 .andExpect(jsonPath("$.children[*].id", containsInAnyOrder("b1", "b2", "b3")));
     }
 
+    @Test
+    @Sql({"/sql/truncate.sql", "/sql/importGroup.sql"})
+    void nestedChildren() throws Exception {
+        mockMvc
+                .perform(get("/nodes/a"))
+                .andExpect(jsonPath("$.children[?(@.id == 'b1')].children[*].id", containsInAnyOrder("c2", "f1", "f2")))
+                .andExpect(jsonPath("$.children[?(@.id == 'b1')].children[?(@.id == 'c2')].children[*].id", contains("f3")))
+                .andExpect(jsonPath("$.children[?(@.id == 'b3')].children[*].children[*].parentId", contains("c1")))
+                .andExpect(jsonPath("$.children[?(@.id == 'b3')].children[*].children[*].size", contains(200)));
+    }
+
     @Test
     @Sql({"/sql/truncate.sql", "/sql/importGroup.sql"})
     void filesHaveNullChildren() throws Exception {
@@ -259,4 +289,31 @@ class NodesTest {
         mockMvc.perform(get("/nodes/f4")).andExpect(jsonPath("$.children").doesNotExist());
         mockMvc.perform(get("/nodes/f6")).andExpect(jsonPath("$.children").doesNotExist());
     }
+
+    @Test
+    @Sql("/sql/truncate.sql")
+    void deepChain() throws Exception {
+        int depth = 500;
+        List<ItemImport> items = new ArrayList<>(depth + 1);
+        items.add(new ItemImport("file", "url", "d" + (depth - 1), ItemType.FILE, 7L));
+
+        // Дети идут раньше родителей
+        for (int i = depth - 1; i >= 0; i--) {
+            items.add(new ItemImport("d" + i, null, i > 0 ? "d" + (i - 1) : null, ItemType.FOLDER, null));
+        }
+
+        mockMvc.perform(postRequest(requestOf(items))).andExpect(status().isOk());
+        mockMvc.perform(get("/nodes/d" + (depth - 1))).andExpect(jsonPath("$.size").value(7));
+
+        ItemImport resized = new ItemImport("file", "url", "d" + (depth - 1), ItemType.FILE, 10L);
+        mockMvc.perform(postRequest(requestOf(resized))).andExpect(status().isOk());
+        mockMvc.perform(get("/nodes/d" + (depth - 2))).andExpect(jsonPath("$.size").value(10));
+
+        // Ответ /nodes/d0 вложен глубже, чем разбирает JsonPath, поэтому разбирается через Jackson
+        String root = mockMvc
+                .perform(get("/nodes/d0"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertEquals(10, objectMapper.readTree(root).get("size").asLong());
+    }
 }
@@ -0,0 +1,22 @@
+package com.mayosen.academy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+/**
+ * Те же проверки, что и в {@link ImportValidationTest}, при выполнении стадий импорта на пуле.
+ */
+@SpringBootTest(properties = {
+        "academy.imports.parallelism=4",
+        "academy.imports.parallel-threshold=1",
+        "academy.imports.chunk-size=1"
+})
+@AutoConfigureMockMvc
+class ParallelImportValidationTest extends ImportValidationTest {
+    @Autowired
+    public ParallelImportValidationTest(MockMvc mockMvc) {
+        super(mockMvc);
+    }
+}
@@ -0,0 +1,108 @@
+package com.mayosen.academy;
+
+import com.mayosen.academy.domain.ItemType;
+import com.mayosen.academy.requests.ItemImport;
+import com.mayosen.academy.services.RecentFiles;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.util.List;
+
+import static com.mayosen.academy.Utils.postRequest;
+import static com.mayosen.academy.Utils.requestOf;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {"academy.updates.recent.enabled=true", "academy.updates.recent.retention=48h"})
+@AutoConfigureMockMvc
+class RecentFilesTest {
+    private final MockMvc mockMvc;
+    private final RecentFiles recentFiles;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public RecentFilesTest(MockMvc mockMvc, RecentFiles recentFiles, JdbcTemplate jdbcTemplate) {
+        this.mockMvc = mockMvc;
+        this.recentFiles = recentFiles;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @BeforeEach
+    void reload() {
+        recentFiles.reload();
+    }
+
+    /**
+     * Изменение в обход приложения, которое не должно быть видно, пока ответ берется из памяти.
+     */
+    private void moveDateDirectly(String id, String date) {
+        jdbcTemplate.update("UPDATE system_item SET date = ?::timestamptz WHERE item_id = ?", date, id);
+    }
+
+    @Test
+    @Sql({"/sql/truncate.sql", "/sql/importGroup.sql"})
+    void loadedOnStartup() throws Exception {
+        mockMvc
+                .perform(get("/updates?date=2022-09-12T00:00:00Z"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].id", containsInAnyOrder("f1", "f2", "f3", "f4", "f6")))
+                .andExpect(jsonPath("$.items[?(@.id == 'f3')].parentId").value("c2"));
+
+        moveDateDirectly("f1", "2022-09-11T18:00:00Z");
+        mockMvc
+                .perform(get("/updates?date=2022-09-11T17:00:00Z"))
+                .andExpect(jsonPath("$.items", hasSize(5)));
+    }
+
+    @Test
+    @Sql({"/sql/truncate.sql", "/sql/importGroup.sql"})
+    void updatedOnCommit() throws Exception {
+        ItemImport file = new ItemImport("f1", "f1-url", "c1", ItemType.FILE, 70L);
+        mockMvc
+                .perform(postRequest(requestOf(file, Instant.parse("2022-09-12T12:00:00Z"))))
+                .andExpect(status().isOk());
+
+        mockMvc
+                .perform(get("/updates?date=2022-09-12T13:00:00Z"))
+                .andExpect(jsonPath("$.items", hasSize(1)))
+                .andExpect(jsonPath("$.items[0].id").value("f1"))
+                .andExpect(jsonPath("$.items[0].parentId").value("c1"))
+                .andExpect(jsonPath("$.items[0].size").value(70));
+
+        mockMvc.perform(delete("/delete/c1?date=2022-09-12T14:00:00Z")).andExpect(status().isOk());
+        mockMvc
+                .perform(get("/updates?date=2022-09-12T13:00:00Z"))
+                .andExpect(jsonPath("$.items", hasSize(0)));
+    }
+
+    @Test
+    @Sql({"/sql/truncate.sql", "/sql/importGroup.sql"})
+    void olderWindowFromDatabase() throws Exception {
+        List<ItemImport> items = List.of(
+                new ItemImport("f1", "f1-url", "b1", ItemType.FILE, 50L),
+                new ItemImport("f2", "f2-url", "b1", ItemType.FILE, 60L)
+        );
+        mockMvc
+                .perform(postRequest(requestOf(items, Instant.parse("2022-09-20T12:00:00Z"))))
+                .andExpect(status().isOk());
+
+        // Окно сдвинулось к 2022-09-18, остальные файлы 2022-09-11 читаются из базы
+        mockMvc
+                .perform(get("/updates?date=2022-09-12T00:00:00Z"))
+                .andExpect(jsonPath("$.items[*].id", containsInAnyOrder("f3", "f4", "f6")));
+        mockMvc
+                .perform(get("/updates?date=2022-09-20T12:00:00Z"))
+                .andExpect(jsonPath("$.items[*].id", containsInAnyOrder("f1", "f2")));
+    }
+}
@@ -0,0 +1,47 @@
+package com.mayosen.academy;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Журнал DEBUG пишется только внутри выбранных запросов, рабочий уровень журналов не меняется.
+ */
+@SpringBootTest(properties = {
+        "academy.logging.debug-sample-rate=1",
+        "logging.level.org.springframework.web=WARN",
+        "logging.level.com.mayosen.academy=WARN"
+})
+@AutoConfigureMockMvc
+@ExtendWith(OutputCaptureExtension.class)
+class SampledLoggingTest {
+    private final MockMvc mockMvc;
+
+    @Autowired
+    public SampledLoggingTest(MockMvc mockMvc) {
+        this.mockMvc = mockMvc;
+    }
+
+    @Test
+    @Sql({"/sql/truncate.sql", "/sql/importGroup.sql"})
+    void debugOnlyInsideSampledRequest(CapturedOutput output) throws Exception {
+        LoggerFactory.getLogger(SampledLoggingTest.class).debug("Outside of request");
+        mockMvc.perform(get("/nodes/a")).andExpect(status().isOk());
+
+        assertThat(output.getOut(), not(containsString("Outside of request")));
+        assertThat(output.getOut(), containsString("Mapped to com.mayosen.academy.controllers.MainController#getNode"));
+    }
+}
@@ -0,0 +1,85 @@
+package com.mayosen.academy;
+
+import com.mayosen.academy.config.StatementCounter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static com.mayosen.academy.Utils.chainOf;
+import static com.mayosen.academy.Utils.postRequest;
+import static com.mayosen.academy.Utils.requestOf;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Количество SQL-запросов на эндпоинт не должно зависеть от размера поддерева.
+ * MockMvc выполняет запрос в потоке теста, поэтому счетчик доступен сразу после запроса.
+ */
+@SpringBootTest(properties = {
+        "academy.sql.statement-budget=2",
+        "academy.sql.endpoint-budgets.[/nodes/{id}]=1"
+})
+@AutoConfigureMockMvc
+@ExtendWith(OutputCaptureExtension.class)
+class StatementBudgetTest {
+    private final MockMvc mockMvc;
+    private final StatementCounter statementCounter;
+
+    @Autowired
+    public StatementBudgetTest(MockMvc mockMvc, StatementCounter statementCounter) {
+        this.mockMvc = mockMvc;
+        this.statementCounter = statementCounter;
+    }
+
+    private long statementsOf(String path) throws Exception {
+        mockMvc.perform(get(path)).andExpect(status().isOk());
+        return statementCounter.getCount();
+    }
+
+    @Test
+    @Sql({"/sql/truncate.sql", "/sql/importGroup.sql"})
+    void nodesAndHistory(CapturedOutput output) throws Exception {
+        assertEquals(1, statementsOf("/nodes/a"));
+        assertEquals(1, statementsOf("/nodes/f6"));
+        assertEquals(2, statementsOf("/node/a/history"));
+        assertEquals(2, statementsOf("/node/f6/history"));
+        assertThat(output.getOut(), not(containsString("SQL statement budget exceeded")));
+    }
+
+    @Test
+    @Sql("/sql/truncate.sql")
+    void deleteDoesNotDependOnDepth() throws Exception {
+        mockMvc.perform(postRequest(requestOf(chainOf(100)))).andExpect(status().isOk());
+
+        mockMvc
+                .perform(delete("/delete/d99").param("date", "2022-10-10T12:00:00Z"))
+                .andExpect(status().isOk());
+        long deep = statementCounter.getCount();
+        mockMvc
+                .perform(delete("/delete/d1").param("date", "2022-10-10T12:00:00Z"))
+                .andExpect(status().isOk());
+
+        assertEquals(deep, statementCounter.getCount());
+    }
+
+    @Test
+    @Sql({"/sql/truncate.sql", "/sql/importGroup.sql"})
+    void budgetExceeded(CapturedOutput output) throws Exception {
+        mockMvc
+                .perform(delete("/delete/f6").param("date", "2022-10-10T12:00:00Z"))
+                .andExpect(status().isOk());
+
+        assertThat(output.getOut(), containsString("SQL statement budget exceeded: method=DELETE uri=/delete/{id}"));
+    }
+}
@@ -3,12 +3,14 @@ package com.mayosen.academy;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.mayosen.academy.domain.ItemType;
 import com.mayosen.academy.requests.ItemImport;
 import com.mayosen.academy.requests.ItemImportRequest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
@@ -37,7 +39,25 @@ public class Utils {
     }
 
     public static MockHttpServletRequestBuilder postRequest(ItemImportRequest request) throws JsonProcessingException {
+        return postRequest("/imports", request);
+    }
+
+    public static MockHttpServletRequestBuilder postRequest(String path, ItemImportRequest request)
+            throws JsonProcessingException {
         byte[] bytes = objectMapper.writeValueAsBytes(request);
-        return post("/imports").contentType(MediaType.APPLICATION_JSON).content(bytes);
+        return post(path).contentType(MediaType.APPLICATION_JSON).content(bytes);
+    }
+
+    /**
+     * Цепочка вложенных папок d0, d1, ... заданной длины, родители идут раньше детей.
+     */
+    public static List<ItemImport> chainOf(int length) {
+        List<ItemImport> items = new ArrayList<>(length);
+
+        for (int i = 0; i < length; i++) {
+            items.add(new ItemImport("d" + i, null, i > 0 ? "d" + (i - 1) : null, ItemType.FOLDER, null));
+        }
+
+        return items;
     }
 }
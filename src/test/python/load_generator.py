@@ -0,0 +1,236 @@
+# encoding=utf8
+
+"""
+Генератор синтетической файловой системы для нагрузочного тестирования.
+
+Дерево строится детерминированно по seed: папки до заданной глубины со случайным
+количеством вложенных папок и файлов, размеры файлов из заданного распределения.
+Результат - последовательность запросов POST /imports в формате ItemImportRequest,
+родители всегда импортируются раньше детей.
+
+Пример:
+    python3 load_generator.py --depth 5 --fan-out 4 --files 8 --out ./load-data
+"""
+
+import argparse
+import json
+import math
+import os
+import random
+import sys
+import uuid
+from datetime import datetime, timedelta, timezone
+
+START_DATE = datetime(2022, 2, 1, 12, 0, 0, tzinfo=timezone.utc)
+
+# Доли изменений файлов в импорте из смешанной нагрузки
+CHURN_RESIZE = 0.6
+CHURN_MOVE = 0.25
+
+
+def format_date(date):
+    return date.strftime("%Y-%m-%dT%H:%M:%SZ")
+
+
+def parse_size_distribution(value):
+    """
+    Распределение размеров файлов:
+    lognormal:<медиана>,<sigma> | uniform:<min>,<max> | fixed:<размер>.
+    """
+    kind, _, params = value.partition(":")
+    numbers = [float(x) for x in params.split(",") if x]
+
+    if kind == "lognormal" and len(numbers) == 2:
+        median, sigma = numbers
+        return lambda rng: max(1, int(rng.lognormvariate(math.log(median), sigma)))
+    if kind == "uniform" and len(numbers) == 2:
+        low, high = int(numbers[0]), int(numbers[1])
+        return lambda rng: rng.randint(max(1, low), high)
+    if kind == "fixed" and len(numbers) == 1:
+        size = max(1, int(numbers[0]))
+        return lambda rng: size
+
+    raise argparse.ArgumentTypeError(f"Unknown size distribution: {value}")
+
+
+def add_tree_arguments(parser):
+    parser.add_argument("--seed", type=int, default=1,
+                        help="seed генератора, одинаковый seed дает одинаковое дерево")
+    parser.add_argument("--depth", type=int, default=5,
+                        help="глубина вложенности папок")
+    parser.add_argument("--fan-out", type=int, default=4,
+                        help="наибольшее количество вложенных папок у папки")
+    parser.add_argument("--files", type=int, default=8,
+                        help="среднее количество файлов в папке")
+    parser.add_argument("--max-items", type=int, default=100_000,
+                        help="ограничение на количество элементов дерева")
+    parser.add_argument("--size-dist", type=parse_size_distribution,
+                        default="lognormal:65536,2.0",
+                        help="распределение размеров файлов")
+    parser.add_argument("--batch-size", type=int, default=1000,
+                        help="количество элементов в одном импорте")
+
+
+class Tree:
+    """
+    Модель дерева на стороне клиента. Хранит только то, что нужно для
+    построения корректных запросов: родителя, тип и размер файлов.
+    """
+
+    def __init__(self, rng, size_dist):
+        self.rng = rng
+        self.size_dist = size_dist
+        self.root_id = None
+        self.folders = []
+        self.files = {}
+        self.parents = {}
+
+    def new_id(self):
+        return str(uuid.UUID(int=self.rng.getrandbits(128), version=4))
+
+    def folder(self, item_id, parent_id):
+        return {"type": "FOLDER", "id": item_id, "parentId": parent_id}
+
+    def file(self, item_id, parent_id, size):
+        return {
+            "type": "FILE",
+            "id": item_id,
+            "url": f"/file/{item_id[:8]}",
+            "parentId": parent_id,
+            "size": size,
+        }
+
+    def new_file(self, parent_id):
+        item_id = self.new_id()
+        size = self.size_dist(self.rng)
+        self.files[item_id] = size
+        self.parents[item_id] = parent_id
+        return self.file(item_id, parent_id, size)
+
+
+def build_tree(args):
+    """
+    Построение дерева обходом в ширину.
+    @return модель дерева и элементы в порядке от корня к листьям
+    """
+    rng = random.Random(args.seed)
+    tree = Tree(rng, args.size_dist)
+    tree.root_id = tree.new_id()
+    tree.folders.append(tree.root_id)
+    items = [tree.folder(tree.root_id, None)]
+    level = [tree.root_id]
+
+    for depth in range(args.depth + 1):
+        next_level = []
+
+        for folder_id in level:
+            if len(items) >= args.max_items:
+                break
+
+            for _ in range(rng.randint(0, 2 * args.files)):
+                items.append(tree.new_file(folder_id))
+
+            if depth == args.depth:
+                continue
+
+            for _ in range(rng.randint(1, max(1, args.fan_out))):
+                child_id = tree.new_id()
+                tree.folders.append(child_id)
+                tree.parents[child_id] = folder_id
+                items.append(tree.folder(child_id, folder_id))
+                next_level.append(child_id)
+
+        level = next_level
+
+    # Отброшенный хвост - последние уровни, поэтому родители оставшихся элементов сохраняются
+    items = items[:args.max_items]
+    kept = {item["id"] for item in items}
+    tree.folders = [folder_id for folder_id in tree.folders if folder_id in kept]
+    tree.files = {file_id: size for file_id, size in tree.files.items() if file_id in kept}
+    tree.parents = {item_id: parent for item_id, parent in tree.parents.items() if item_id in kept}
+    return tree, items
+
+
+def import_batches(items, batch_size, start_date=START_DATE):
+    """
+    Разбиение элементов на импорты с возрастающей датой обновления.
+    """
+    batches = []
+
+    for index, offset in enumerate(range(0, len(items), batch_size)):
+        batches.append({
+            "items": items[offset:offset + batch_size],
+            "updateDate": format_date(start_date + timedelta(seconds=index)),
+        })
+
+    return batches
+
+
+def churn_items(tree, count, busy=frozenset()):
+    """
+    Изменения для одного импорта смешанной нагрузки: новые размеры,
+    перенос в другую папку и новые файлы. Модель дерева обновляется сразу.
+    @param busy файлы, которые нельзя трогать, так как запросы с ними еще выполняются
+    """
+    rng = tree.rng
+    items = []
+    changed = set()
+    file_ids = list(tree.files.keys())
+
+    for _ in range(count):
+        roll = rng.random()
+        file_id = rng.choice(file_ids) if file_ids else None
+
+        if file_id is None or file_id in busy or file_id in changed or roll >= CHURN_RESIZE + CHURN_MOVE:
+            items.append(tree.new_file(rng.choice(tree.folders)))
+            changed.add(items[-1]["id"])
+            continue
+
+        parent_id = tree.parents[file_id]
+
+        if roll >= CHURN_RESIZE:
+            parent_id = rng.choice(tree.folders)
+            tree.parents[file_id] = parent_id
+
+        size = tree.size_dist(rng)
+        tree.files[file_id] = size
+        items.append(tree.file(file_id, parent_id, size))
+        changed.add(file_id)
+
+    return items
+
+
+def main():
+    parser = argparse.ArgumentParser(description=__doc__, formatter_class=argparse.RawDescriptionHelpFormatter)
+    add_tree_arguments(parser)
+    parser.add_argument("--churn-imports", type=int, default=0,
+                        help="количество импортов с изменениями после построения дерева")
+    parser.add_argument("--churn", type=float, default=0.01,
+                        help="доля файлов, изменяемых одним импортом")
+    parser.add_argument("--out", required=True, help="каталог для файлов с запросами")
+    args = parser.parse_args()
+
+    tree, items = build_tree(args)
+    batches = import_batches(items, args.batch_size)
+    churn_count = max(1, int(len(tree.files) * args.churn))
+    start = START_DATE + timedelta(seconds=len(batches))
+
+    for index in range(args.churn_imports):
+        batches.append({
+            "items": churn_items(tree, churn_count),
+            "updateDate": format_date(start + timedelta(seconds=index)),
+        })
+
+    os.makedirs(args.out, exist_ok=True)
+
+    for index, batch in enumerate(batches):
+        with open(os.path.join(args.out, f"import-{index:05d}.json"), "w") as f:
+            json.dump(batch, f, indent=2, ensure_ascii=False)
+            f.write("\n")
+
+    print(f"Root {tree.root_id}: {len(tree.folders)} folders, {len(tree.files)} files, "
+          f"{len(batches)} imports written to {args.out}", file=sys.stderr)
+
+
+if __name__ == "__main__":
+    main()
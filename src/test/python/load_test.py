@@ -0,0 +1,393 @@
+# encoding=utf8
+
+"""
+Нагрузочный тест HTTP API.
+
+Сначала загружает синтетическое дерево из load_generator.py, затем в несколько
+потоков воспроизводит смешанную нагрузку на /imports, /delete, /nodes, /updates
+и /node/{id}/history. В конце печатает пропускную способность и задержки
+p50/p99/p999 по каждому эндпоинту.
+
+Идентификаторы элементов зависят только от seed. Повторный запуск с тем же seed
+обновляет оставшееся дерево, для нового дерева нужен другой seed или --cleanup.
+Модель дерева на клиенте не дает потокам одновременно менять один файл,
+так что ответы кроме 200 означают ошибку сервиса.
+
+В асинхронном режиме (academy.imports.async.enabled) /imports отвечает 202.
+Такой ответ считается успешным, в отчет попадает задержка постановки в очередь,
+а поток дожидается завершения импорта по /imports/{ticketId}, прежде чем освободить файлы.
+Импорт, завершившийся неудачей, считается ошибкой со статусом failed.
+
+Пример:
+    python3 load_test.py http://localhost:80 --duration 60 --threads 16 \\
+        --mix imports=10,delete=2,nodes=50,updates=18,history=20
+"""
+
+import argparse
+import http.client
+import json
+import random
+import sys
+import threading
+import time
+import urllib.parse
+from datetime import timedelta
+
+from load_generator import START_DATE, add_tree_arguments, build_tree, churn_items, format_date, import_batches
+
+ENDPOINTS = ["imports", "delete", "nodes", "updates", "history"]
+TICKET_POLL_INTERVAL = 0.05
+DEFAULT_MIX = "imports=10,delete=2,nodes=50,updates=18,history=20"
+PERCENTILES = [50, 99, 99.9]
+
+
+def parse_mix(value):
+    weights = dict.fromkeys(ENDPOINTS, 0)
+
+    for part in value.split(","):
+        name, _, weight = part.partition("=")
+
+        if name not in weights:
+            raise argparse.ArgumentTypeError(f"Unknown endpoint: {name}")
+
+        weights[name] = float(weight)
+
+    if sum(weights.values()) <= 0:
+        raise argparse.ArgumentTypeError("Mix must contain a positive weight")
+
+    return weights
+
+
+class Client:
+    """
+    Постоянное соединение одного потока.
+    """
+
+    def __init__(self, base_url, timeout):
+        url = urllib.parse.urlsplit(base_url)
+        connection_class = http.client.HTTPSConnection if url.scheme == "https" else http.client.HTTPConnection
+        self.connect = lambda: connection_class(url.hostname, url.port, timeout=timeout)
+        self.connection = self.connect()
+
+    def request(self, method, path, data=None):
+        return self.fetch(method, path, data)[0]
+
+    def fetch(self, method, path, data=None):
+        """
+        @return статус и тело ответа, при ошибке соединения статус 0
+        """
+        body = None
+        headers = {}
+
+        if data is not None:
+            body = json.dumps(data, ensure_ascii=False).encode("utf-8")
+            headers["Content-Type"] = "application/json"
+
+        try:
+            self.connection.request(method, path, body, headers)
+            response = self.connection.getresponse()
+            return response.status, response.read()
+        except (http.client.HTTPException, OSError):
+            self.connection.close()
+            self.connection = self.connect()
+            return 0, b""
+
+    def post_import(self, data):
+        """
+        Импорт в синхронном или асинхронном режиме.
+        @return статус ответа и идентификатор импорта, если он поставлен в очередь
+        """
+        status, body = self.fetch("POST", "/imports", data)
+
+        if status == 202:
+            return status, json.loads(body)["id"]
+
+        return status, None
+
+    def wait_import(self, ticket_id):
+        """
+        Ожидание импорта, поставленного в очередь.
+        @return DONE, FAILED или статус ответа, если состояние получить не удалось
+        """
+        while True:
+            status, body = self.fetch("GET", f"/imports/{ticket_id}")
+
+            if status != 200:
+                return status
+
+            state = json.loads(body)["status"]
+
+            if state in ("DONE", "FAILED"):
+                return state
+
+            time.sleep(TICKET_POLL_INTERVAL)
+
+
+class Stats:
+    def __init__(self):
+        self.lock = threading.Lock()
+        self.latencies = {name: [] for name in ENDPOINTS}
+        self.errors = {name: {} for name in ENDPOINTS}
+
+    def record(self, name, status, seconds):
+        with self.lock:
+            if status == 200:
+                self.latencies[name].append(seconds)
+            else:
+                self.errors[name][status] = self.errors[name].get(status, 0) + 1
+
+    def report(self, elapsed):
+        rows = []
+        header = ["endpoint", "ok", "errors", "rps"] + [f"p{p:g} ms" for p in PERCENTILES] + ["max ms"]
+
+        for name in ENDPOINTS + ["total"]:
+            if name == "total":
+                latencies = sorted(x for values in self.latencies.values() for x in values)
+                errors = sum(sum(e.values()) for e in self.errors.values())
+            else:
+                latencies = sorted(self.latencies[name])
+                errors = sum(self.errors[name].values())
+
+            if not latencies and not errors:
+                continue
+
+            row = [name, str(len(latencies)), str(errors), f"{len(latencies) / elapsed:.1f}"]
+            row += [f"{percentile(latencies, p) * 1000:.2f}" for p in PERCENTILES]
+            row.append(f"{latencies[-1] * 1000:.2f}" if latencies else "-")
+            rows.append(row)
+
+        widths = [max(len(row[i]) for row in [header] + rows) for i in range(len(header))]
+
+        for row in [header] + rows:
+            print("  ".join(cell.rjust(width) for cell, width in zip(row, widths)))
+
+        for name in ENDPOINTS:
+            if self.errors[name]:
+                codes = ", ".join(f"{status or 'connection'}: {count}" for status, count in self.errors[name].items())
+                print(f"{name} errors by status: {codes}", file=sys.stderr)
+
+    def summary(self, elapsed):
+        result = {}
+
+        for name in ENDPOINTS:
+            latencies = sorted(self.latencies[name])
+            result[name] = {
+                "ok": len(latencies),
+                "errors": self.errors[name],
+                "rps": len(latencies) / elapsed,
+                **{f"p{p:g}_ms": percentile(latencies, p) * 1000 for p in PERCENTILES},
+            }
+
+        return result
+
+
+def percentile(values, p):
+    """
+    Перцентиль по ближайшему рангу для отсортированного списка.
+    """
+    if not values:
+        return float("nan")
+
+    rank = max(1, -(-len(values) * p // 100))
+    return values[int(rank) - 1]
+
+
+class Workload:
+    """
+    Общее состояние потоков: модель дерева, часы дат обновления и занятые файлы.
+    """
+
+    def __init__(self, tree, args, start_date):
+        self.tree = tree
+        self.args = args
+        self.lock = threading.Lock()
+        self.clock = start_date
+        self.busy = set()
+        self.churn_count = max(1, int(len(tree.files) * args.churn))
+
+    def tick(self):
+        self.clock += timedelta(seconds=1)
+        return self.clock
+
+    def next_request(self, name, rng):
+        """
+        Выбор запроса. Изменяющие запросы сразу применяются к модели,
+        а затронутые файлы помечаются занятыми до получения ответа.
+        @return метод, путь, тело запроса и занятые файлы
+        """
+        tree = self.tree
+
+        with self.lock:
+            if name == "imports":
+                items = churn_items(tree, self.churn_count, self.busy)
+                claimed = {item["id"] for item in items}
+                self.busy |= claimed
+                return "POST", "/imports", {"items": items, "updateDate": format_date(self.tick())}, claimed
+
+            if name == "delete":
+                file_id = next((f for f in rng.sample(list(tree.files), min(8, len(tree.files)))
+                                if f not in self.busy), None)
+
+                if file_id is None:
+                    return None
+
+                del tree.files[file_id]
+                del tree.parents[file_id]
+                self.busy.add(file_id)
+                query = urllib.parse.urlencode({"date": format_date(self.tick())})
+                return "DELETE", f"/delete/{file_id}?{query}", None, {file_id}
+
+            if name == "nodes":
+                return "GET", f"/nodes/{rng.choice(tree.folders)}", None, set()
+
+            if name == "updates":
+                query = urllib.parse.urlencode({"date": format_date(self.clock)})
+                return "GET", f"/updates?{query}", None, set()
+
+            # Новые файлы попадают в модель до фиксации импорта, поэтому занятые файлы не запрашиваются
+            files = [f for f in tree.files if f not in self.busy]
+            item_id = rng.choice(tree.folders if rng.random() < 0.5 or not files else files)
+            query = urllib.parse.urlencode({
+                "dateStart": format_date(START_DATE),
+                "dateEnd": format_date(self.clock + timedelta(seconds=1)),
+            })
+            return "GET", f"/node/{item_id}/history?{query}", None, set()
+
+    def release(self, claimed):
+        if claimed:
+            with self.lock:
+                self.busy -= claimed
+
+
+def load_tree(client, items, args):
+    batches = import_batches(items, args.batch_size)
+    started = time.perf_counter()
+    tickets = []
+
+    for index, batch in enumerate(batches):
+        status, ticket_id = client.post_import(batch)
+
+        if status not in (200, 202):
+            sys.exit(f"Initial import {index} failed with status {status}")
+
+        if ticket_id is not None:
+            tickets.append((index, ticket_id))
+
+    for index, ticket_id in tickets:
+        state = client.wait_import(ticket_id)
+
+        if state != "DONE":
+            sys.exit(f"Initial import {index} failed: {state}")
+
+    elapsed = time.perf_counter() - started
+    print(f"Loaded {len(items)} items in {len(batches)} imports: {elapsed:.1f} s, "
+          f"{len(items) / elapsed:.0f} items/s", file=sys.stderr)
+    return START_DATE + timedelta(seconds=len(batches))
+
+
+def run_worker(worker_id, workload, stats, args, deadline, remaining):
+    client = Client(args.url, args.timeout)
+    rng = random.Random(args.seed * 1000 + worker_id)
+    names = list(args.mix.keys())
+    weights = list(args.mix.values())
+
+    while time.perf_counter() < deadline:
+        if remaining is not None:
+            with remaining["lock"]:
+                if remaining["count"] <= 0:
+                    return
+                remaining["count"] -= 1
+
+        name = rng.choices(names, weights)[0]
+        request = workload.next_request(name, rng)
+
+        if request is None:
+            continue
+
+        method, path, data, claimed = request
+        started = time.perf_counter()
+
+        if name == "imports":
+            status, ticket_id = client.post_import(data)
+            seconds = time.perf_counter() - started
+
+            # Файлы остаются занятыми, пока импорт из очереди не применен
+            if ticket_id is not None:
+                state = client.wait_import(ticket_id)
+                status = 200 if state == "DONE" else ("failed" if state == "FAILED" else state)
+        else:
+            status = client.request(method, path, data)
+            seconds = time.perf_counter() - started
+
+        stats.record(name, status, seconds)
+        workload.release(claimed)
+
+
+def main():
+    parser = argparse.ArgumentParser(description=__doc__, formatter_class=argparse.RawDescriptionHelpFormatter)
+    parser.add_argument("url", nargs="?", default="http://localhost:80")
+    add_tree_arguments(parser)
+    parser.add_argument("--churn", type=float, default=0.001,
+                        help="доля файлов, изменяемых одним импортом смешанной нагрузки")
+    parser.add_argument("--mix", type=parse_mix, default=DEFAULT_MIX,
+                        help="веса эндпоинтов в смешанной нагрузке")
+    parser.add_argument("--threads", type=int, default=8)
+    parser.add_argument("--duration", type=float, default=30, help="длительность нагрузки в секундах")
+    parser.add_argument("--requests", type=int, help="остановиться после заданного количества запросов")
+    parser.add_argument("--warmup", type=float, default=5, help="секунды прогрева, не попадающие в отчет")
+    parser.add_argument("--timeout", type=float, default=60)
+    parser.add_argument("--json", help="файл для сохранения результатов")
+    parser.add_argument("--cleanup", action="store_true", help="удалить корень после теста")
+    args = parser.parse_args()
+
+    tree, items = build_tree(args)
+    print(f"Tree {tree.root_id}: {len(tree.folders)} folders, {len(tree.files)} files", file=sys.stderr)
+    client = Client(args.url, args.timeout)
+    workload = Workload(tree, args, load_tree(client, items, args))
+
+    phases = [("warmup", args.warmup, None)] if args.warmup > 0 else []
+    phases.append(("measure", args.duration, {"lock": threading.Lock(), "count": args.requests}
+                   if args.requests else None))
+
+    for phase, duration, remaining in phases:
+        stats = Stats()
+        deadline = time.perf_counter() + duration
+        started = time.perf_counter()
+        threads = [
+            threading.Thread(target=run_worker, args=(i, workload, stats, args, deadline, remaining))
+            for i in range(args.threads)
+        ]
+
+        for thread in threads:
+            thread.start()
+
+        for thread in threads:
+            thread.join()
+
+        elapsed = time.perf_counter() - started
+
+    print(f"{args.threads} threads, {elapsed:.1f} s")
+    stats.report(elapsed)
+
+    if args.json:
+        with open(args.json, "w") as f:
+            json.dump({
+                "url": args.url,
+                "threads": args.threads,
+                "seed": args.seed,
+                "items": len(items),
+                "elapsed": elapsed,
+                "endpoints": stats.summary(elapsed),
+            }, f, indent=2)
+            f.write("\n")
+
+    if args.cleanup:
+        query = urllib.parse.urlencode({"date": format_date(workload.tick())})
+        client.request("DELETE", f"/delete/{tree.root_id}?{query}")
+
+    if any(stats.errors[name] for name in ENDPOINTS):
+        sys.exit(1)
+
+
+if __name__ == "__main__":
+    main()